@@ -0,0 +1,40 @@
+package com.gome.gmweatherview.benchmark;
+
+import com.gome.gmweatherview.util.CubicBezier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves the sunny rotation curve for inputs spread over the whole range, as the painter does
+ * once per ring and frame.
+ *
+ * @author Felix.Liang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CubicBezierBenchmark {
+
+    private final CubicBezier mCurve = new CubicBezier(.2f, .27f, .7f, .92f);
+    private float mInput;
+
+    @Benchmark
+    public float solve() {
+        mInput += 0.0173f;
+        if (mInput > 1) mInput -= 1;
+        return mCurve.solve(mInput);
+    }
+}
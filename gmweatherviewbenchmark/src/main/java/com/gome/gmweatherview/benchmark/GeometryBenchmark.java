@@ -0,0 +1,53 @@
+package com.gome.gmweatherview.benchmark;
+
+import com.gome.gmweatherview.util.AlphaRamp;
+import com.gome.gmweatherview.util.Geometry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point generation and alpha ramps as run on size changes and per frame.
+ *
+ * @author Felix.Liang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBenchmark {
+
+    private final float[] mWave = new float[400];
+    private final float[] mHexagon = new float[12];
+    private float mFraction;
+
+    @Benchmark
+    public float[] sineWave() {
+        Geometry.sineWave(mWave, 8, 600, 60);
+        return mWave;
+    }
+
+    @Benchmark
+    public float[] polygon() {
+        Geometry.polygon(mHexagon, 6, 210);
+        return mHexagon;
+    }
+
+    @Benchmark
+    public int alphaTent() {
+        mFraction += 0.013f;
+        if (mFraction >= 1) mFraction -= 1;
+        return AlphaRamp.tent(mFraction, 0.2f, 200);
+    }
+}
@@ -0,0 +1,83 @@
+package com.gome.gmweatherview.benchmark;
+
+import com.gome.gmweatherview.util.Geometry;
+import com.gome.gmweatherview.util.Projection3D;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Projects one frame of the hazy / sandy point field: a rotated copy of the wave per line,
+ * with the line spacing and wave of PointFieldPainter at density 1. The line counts are those
+ * of its low, medium and high quality tiers; the low tier's halved point count is left out.
+ *
+ * @author Felix.Liang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Projection3DBenchmark {
+
+    private static final int NUMBER_OF_LINES = 18;
+    private static final float DELTA_DEGREE = 10;
+    private static final float DELTA_OFFSET = 20;
+    private static final int DELTA_X = 3;
+    private static final int WAVE_WIDTH = 350;
+    private static final float AMPLITUDE_RATIO = 0.2f;
+
+    @Param({"9", "14", "18"})
+    public int lines;
+
+    @Param({"225"})
+    public int pointsPerLine;
+
+    private final Projection3D mProjection = new Projection3D();
+    private final float[] mValues = new float[9];
+    private float[] mSrcPoints;
+    private float[] mDstPoints;
+    private float mDegree;
+
+    @Setup
+    public void setup() {
+        mSrcPoints = new float[pointsPerLine * 2];
+        Geometry.sineWave(mSrcPoints, DELTA_X, WAVE_WIDTH, (int) (WAVE_WIDTH * AMPLITUDE_RATIO));
+        mDstPoints = new float[mSrcPoints.length * lines];
+    }
+
+    @Benchmark
+    public float[] projectFrame() {
+        // lower tiers spread fewer lines over the same fan, as the painter does
+        final float step = lines > 1 ? (NUMBER_OF_LINES - 1f) / (lines - 1) : 1;
+        for (int k = 0; k < lines; k++) {
+            final float i = k * step;
+            mProjection.reset();
+            mProjection.translate(200 + i * DELTA_OFFSET, 0, 0);
+            mProjection.rotateX(i * DELTA_DEGREE + mDegree);
+            mProjection.getValues(mValues);
+            Projection3D.mapPoints(mValues, mDstPoints, k * mSrcPoints.length, mSrcPoints, 0, pointsPerLine);
+        }
+        mDegree -= 0.5f;
+        return mDstPoints;
+    }
+
+    @Benchmark
+    public float sinDegrees() {
+        mDegree += 0.7f;
+        if (mDegree > 360) mDegree -= 360;
+        return Projection3D.sinDegrees(mDegree);
+    }
+}
@@ -0,0 +1,18 @@
+package com.gome.gmweatherview.util;
+
+/**
+ * Piecewise linear alpha curves used to fade elements in and out.
+ *
+ * @author Felix.Liang
+ */
+public class AlphaRamp {
+
+    /**
+     * Rises linearly from 0 to {@code maxAlpha} while {@code fraction} goes from 0 to
+     * {@code peak}, then falls back to 0 at 1.
+     */
+    public static int tent(float fraction, float peak, int maxAlpha) {
+        if (fraction < peak) return (int) (maxAlpha * fraction / peak);
+        else return (int) (maxAlpha * (1 - fraction) / (1 - peak));
+    }
+}
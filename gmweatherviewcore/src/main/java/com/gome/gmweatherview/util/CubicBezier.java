@@ -0,0 +1,90 @@
+package com.gome.gmweatherview.util;
+
+/**
+ * Cubic bezier timing curve from (0, 0) to (1, 1). The curve parameter for an x value is found
+ * from a small table of precomputed x samples, refined with Newton-Raphson or, where the curve
+ * is too flat for it, with bisection. Instances keep no state between calls, so they can be
+ * shared and evaluated in any order.
+ *
+ * @author Felix.Liang
+ */
+public class CubicBezier {
+
+    private static final int SAMPLE_COUNT = 11;
+    private static final float SAMPLE_STEP = 1f / (SAMPLE_COUNT - 1);
+    private static final int NEWTON_ITERATIONS = 4;
+    private static final float NEWTON_MIN_SLOPE = 0.001f;
+    private static final int BISECTION_ITERATIONS = 12;
+    private static final float PRECISION = 1e-7f;
+    private final float mAx, mBx, mCx;
+    private final float mAy, mBy, mCy;
+    private final float[] mSamples = new float[SAMPLE_COUNT];
+
+    public CubicBezier(float cx1, float cy1, float cx2, float cy2) {
+        mCx = 3 * cx1;
+        mBx = 3 * (cx2 - cx1) - mCx;
+        mAx = 1 - mCx - mBx;
+        mCy = 3 * cy1;
+        mBy = 3 * (cy2 - cy1) - mCy;
+        mAy = 1 - mCy - mBy;
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            mSamples[i] = curveX(i * SAMPLE_STEP);
+        }
+    }
+
+    /**
+     * @return y of the point on the curve whose x is {@code x}
+     */
+    public float solve(float x) {
+        if (x <= 0) return 0;
+        if (x >= 1) return 1;
+        return curveY(findT(x));
+    }
+
+    private float findT(float x) {
+        int i = 1;
+        final int last = SAMPLE_COUNT - 1;
+        while (i < last && mSamples[i] <= x) i++;
+        i--;
+        final float start = i * SAMPLE_STEP;
+        final float dist = (x - mSamples[i]) / (mSamples[i + 1] - mSamples[i]);
+        final float guess = start + dist * SAMPLE_STEP;
+        final float slope = slopeX(guess);
+        if (slope >= NEWTON_MIN_SLOPE) return newtonRaphson(x, guess);
+        if (slope == 0) return guess;
+        return bisect(x, start, start + SAMPLE_STEP);
+    }
+
+    private float newtonRaphson(float x, float t) {
+        for (int i = 0; i < NEWTON_ITERATIONS; i++) {
+            final float slope = slopeX(t);
+            if (slope == 0) break;
+            t -= (curveX(t) - x) / slope;
+        }
+        return t;
+    }
+
+    private float bisect(float x, float low, float high) {
+        float t = low;
+        for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+            t = (low + high) / 2;
+            final float delta = curveX(t) - x;
+            if (Math.abs(delta) < PRECISION) break;
+            if (delta > 0) high = t;
+            else low = t;
+        }
+        return t;
+    }
+
+    private float curveX(float t) {
+        return ((mAx * t + mBx) * t + mCx) * t;
+    }
+
+    private float curveY(float t) {
+        return ((mAy * t + mBy) * t + mCy) * t;
+    }
+
+    private float slopeX(float t) {
+        return (3 * mAx * t + 2 * mBx) * t + mCx;
+    }
+}
@@ -0,0 +1,37 @@
+package com.gome.gmweatherview.util;
+
+/**
+ * Point generation shared by the painters, kept free of Android types.
+ *
+ * @author Felix.Liang
+ */
+public class Geometry {
+
+    /**
+     * Samples a sine wave into {@code dst} as x, y pairs. The wave starts at {@code -waveWidth}
+     * and crosses zero every {@code waveWidth}; x advances {@code 2 * deltaX} per point.
+     */
+    public static void sineWave(float[] dst, int deltaX, int waveWidth, float amplitude) {
+        final float omega = (float) (Math.PI / waveWidth);
+        for (int i = 0; i < dst.length; i++) {
+            if (i % 2 == 0) {
+                dst[i] = i * deltaX - waveWidth;
+            } else {
+                float pre = dst[i - 1];
+                dst[i] = (float) (Math.sin(omega * pre) * amplitude);
+            }
+        }
+    }
+
+    /**
+     * Writes the vertices of a regular polygon centered at the origin into {@code dst} as x, y
+     * pairs, starting straight above the center and going clockwise.
+     */
+    public static void polygon(float[] dst, int sides, float radius) {
+        final float degree = 360f / sides;
+        for (int j = 0; j < sides; j++) {
+            dst[j * 2] = (float) (radius * Math.sin(Math.toRadians(j * degree)));
+            dst[j * 2 + 1] = (float) (-radius * Math.cos(Math.toRadians(j * degree)));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.gome.gmweatherview.util;
+
+/**
+ * Pure Java counterpart of {@code android.graphics.Camera} for translations and rotations
+ * around the x axis. {@link #getValues(float[])} produces the same perspective matrix as
+ * {@code Camera.getMatrix()}, with the camera 576 units (8 inches at 72dpi) in front of the
+ * canvas, but without going through native code, so it can run on any thread and off device.
+ * <p>
+ * Sines and cosines come from a lookup table, since painters keep cycling through the same
+ * angles every frame.
+ *
+ * @author Felix.Liang
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class Projection3D {
+
+    public static final float CAMERA_LOCATION_Z = -576;
+    private static final int TABLE_SIZE = 4096;
+    private static final float STEPS_PER_DEGREE = TABLE_SIZE / 360f;
+    private static final float[] SIN_TABLE = new float[TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            SIN_TABLE[i] = (float) Math.sin(2 * Math.PI * i / TABLE_SIZE);
+        }
+    }
+
+    /**
+     * Rotation part, row major.
+     */
+    private final float[] mRotation = new float[9];
+    private float mTransX;
+    private float mTransY;
+    private float mTransZ;
+
+    public Projection3D() {
+        reset();
+    }
+
+    public void reset() {
+        mRotation[0] = 1;
+        mRotation[1] = 0;
+        mRotation[2] = 0;
+        mRotation[3] = 0;
+        mRotation[4] = 1;
+        mRotation[5] = 0;
+        mRotation[6] = 0;
+        mRotation[7] = 0;
+        mRotation[8] = 1;
+        mTransX = 0;
+        mTransY = 0;
+        mTransZ = 0;
+    }
+
+    /**
+     * Same as {@code Camera.translate()}: moves along the current, possibly rotated, axes.
+     */
+    public void translate(float x, float y, float z) {
+        final float[] r = mRotation;
+        mTransX += r[0] * x + r[1] * y + r[2] * z;
+        mTransY += r[3] * x + r[4] * y + r[5] * z;
+        mTransZ += r[6] * x + r[7] * y + r[8] * z;
+    }
+
+    /**
+     * Same as {@code Camera.rotateX()}.
+     */
+    public void rotateX(float degrees) {
+        final float c = cosDegrees(degrees);
+        final float s = sinDegrees(degrees);
+        final float[] r = mRotation;
+        for (int row = 0; row < 9; row += 3) {
+            final float r1 = r[row + 1];
+            final float r2 = r[row + 2];
+            r[row + 1] = r1 * c + r2 * s;
+            r[row + 2] = r2 * c - r1 * s;
+        }
+    }
+
+    /**
+     * Writes the projection in the order used by {@code Matrix.setValues()}.
+     */
+    public void getValues(float[] values) {
+        final float[] r = mRotation;
+        final float dot = mTransZ - CAMERA_LOCATION_Z;
+        final float scale = -CAMERA_LOCATION_Z / dot;
+        // the patch spans u = (1, 0, 0) and v = (0, -1, 0) in the rotated space
+        values[0] = scale * r[0];
+        values[1] = -scale * r[1];
+        values[2] = scale * mTransX;
+        values[3] = -scale * r[3];
+        values[4] = scale * r[4];
+        values[5] = -scale * mTransY;
+        values[6] = r[6] / dot;
+        values[7] = -r[7] / dot;
+        values[8] = 1;
+    }
+
+    /**
+     * Maps {@code pointCount} points through a 3x3 matrix given in {@code Matrix.getValues()} order.
+     */
+    public static void mapPoints(float[] values, float[] dst, int dstIndex, float[] src, int srcIndex, int pointCount) {
+        final float m0 = values[0], m1 = values[1], m2 = values[2];
+        final float m3 = values[3], m4 = values[4], m5 = values[5];
+        final float m6 = values[6], m7 = values[7], m8 = values[8];
+        final boolean perspective = m6 != 0 || m7 != 0 || m8 != 1;
+        for (int i = 0; i < pointCount; i++) {
+            final float x = src[srcIndex++];
+            final float y = src[srcIndex++];
+            float w = 1;
+            if (perspective) {
+                w = m6 * x + m7 * y + m8;
+                w = w != 0 ? 1 / w : 0;
+            }
+            dst[dstIndex++] = (m0 * x + m1 * y + m2) * w;
+            dst[dstIndex++] = (m3 * x + m4 * y + m5) * w;
+        }
+    }
+
+    public static float sinDegrees(float degrees) {
+        float index = (degrees % 360) * STEPS_PER_DEGREE;
+        if (index < 0) index += TABLE_SIZE;
+        if (index >= TABLE_SIZE) index -= TABLE_SIZE;
+        final int i = (int) index;
+        final float fraction = index - i;
+        return SIN_TABLE[i] + (SIN_TABLE[i + 1] - SIN_TABLE[i]) * fraction;
+    }
+
+    public static float cosDegrees(float degrees) {
+        return sinDegrees(degrees + 90);
+    }
+}
@@ -0,0 +1,61 @@
+package com.gome.gmweatherview.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the tent ramp against the alpha curves the painters computed inline before it moved
+ * into the core module. Values may differ by one where float rounding meets the truncation.
+ *
+ * @author Felix.Liang
+ */
+public class AlphaRampTest {
+
+    private static final int STEPS = 10000;
+
+    @Test
+    public void matchesSnowflakeLineAlpha() {
+        for (int i = 0; i <= STEPS; i++) {
+            final float fraction = (float) i / STEPS;
+            assertEquals("fraction " + fraction, oldSnowyAlpha(fraction), AlphaRamp.tent(fraction, 0.2f, 200), 1);
+        }
+    }
+
+    @Test
+    public void matchesFogRingAlpha() {
+        final float maxScale = 1 + 5 * 0.13f;
+        for (int i = 0; i <= STEPS; i++) {
+            final float scale = 1 + (maxScale - 1) * i / STEPS;
+            assertEquals("scale " + scale, oldFoggyAlpha(scale, maxScale),
+                    AlphaRamp.tent((scale - 1) / (maxScale - 1), 0.5f, 255), 1);
+        }
+    }
+
+    @Test
+    public void peaksAtPeakAndFadesAtBothEnds() {
+        assertEquals(0, AlphaRamp.tent(0, 0.3f, 255));
+        assertEquals(255, AlphaRamp.tent(0.3f, 0.3f, 255));
+        assertEquals(0, AlphaRamp.tent(1, 0.3f, 255));
+    }
+
+    /**
+     * {@code SnowyPainter.getCurrentAlpha} before the move.
+     */
+    private static int oldSnowyAlpha(float fraction) {
+        if (fraction < 0.2f) return (int) (200 * 5 * fraction);
+        else return (int) (200 * (-1.25 * fraction + 1.25));
+    }
+
+    /**
+     * {@code FoggyPainter.calculateAlpha} before the move.
+     */
+    private static int oldFoggyAlpha(float scale, float maxScale) {
+        scale -= 1;
+        if (scale < (maxScale - 1) / 2) {
+            return (int) ((2 * 255) / (maxScale - 1) * scale);
+        } else {
+            return (int) ((2 * 255) / (1 - maxScale) * (scale - maxScale + 1));
+        }
+    }
+}
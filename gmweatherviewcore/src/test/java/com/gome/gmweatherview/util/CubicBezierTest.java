@@ -0,0 +1,142 @@
+package com.gome.gmweatherview.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the solver against the 4096 step scan {@code CubicBezierInterpolator} used before it,
+ * and against the curve solved in double precision.
+ *
+ * @author Felix.Liang
+ */
+public class CubicBezierTest {
+
+    /**
+     * The scan picks the first of 4096 steps of t at or past the answer, which is off by up to
+     * max |dy/dt| / 4096 = 3 / 4096 for control points inside the unit square, and it snaps
+     * anything above 0.999 to 1.
+     */
+    private static final float SCAN_EPSILON = 2e-3f;
+    private static final float EPSILON = 1e-4f;
+    private static final int STEPS = 1000;
+    private static final float[][] CURVES = {
+            {.2f, .27f, .7f, .92f},
+            {.25f, .1f, .25f, 1f},
+            {.42f, 0f, .58f, 1f},
+            {.42f, 0f, 1f, 1f},
+            {0f, 0f, .58f, 1f},
+            {0f, 0f, 1f, 1f},
+            {0f, 1f, 0f, 1f},
+            {1f, 0f, 1f, 0f}};
+    private static final float[] OVERSHOOT = {.68f, -.55f, .27f, 1.55f};
+
+    @Test
+    public void matchesOldScan() {
+        for (float[] c : CURVES) {
+            final CubicBezier curve = new CubicBezier(c[0], c[1], c[2], c[3]);
+            final OldScan scan = new OldScan(c[0], c[1], c[2], c[3]);
+            // the scan only works for rising input, the way an animator feeds it
+            for (int i = 0; i <= STEPS; i++) {
+                final float x = (float) i / STEPS;
+                assertEquals(describe(c, x), scan.getInterpolation(x), curve.solve(x), SCAN_EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void matchesExactCurve() {
+        final float[][] curves = new float[CURVES.length + 1][];
+        System.arraycopy(CURVES, 0, curves, 0, CURVES.length);
+        curves[CURVES.length] = OVERSHOOT;
+        for (float[] c : curves) {
+            final CubicBezier curve = new CubicBezier(c[0], c[1], c[2], c[3]);
+            for (int i = 0; i <= STEPS; i++) {
+                final float x = (float) i / STEPS;
+                assertEquals(describe(c, x), exact(c, x), curve.solve(x), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void doesNotDependOnCallOrder() {
+        final float[] c = CURVES[0];
+        final CubicBezier curve = new CubicBezier(c[0], c[1], c[2], c[3]);
+        final float[] rising = new float[STEPS + 1];
+        for (int i = 0; i <= STEPS; i++) rising[i] = curve.solve((float) i / STEPS);
+        for (int i = STEPS; i >= 0; i--) {
+            assertEquals(describe(c, (float) i / STEPS), rising[i], curve.solve((float) i / STEPS), 0);
+        }
+    }
+
+    @Test
+    public void clampsOutsideUnitInterval() {
+        final CubicBezier curve = new CubicBezier(.68f, -.55f, .27f, 1.55f);
+        assertEquals(0, curve.solve(-1), 0);
+        assertEquals(0, curve.solve(0), 0);
+        assertEquals(1, curve.solve(1), 0);
+        assertEquals(1, curve.solve(2), 0);
+    }
+
+    private static String describe(float[] c, float x) {
+        return "curve (" + c[0] + ", " + c[1] + ", " + c[2] + ", " + c[3] + ") at x " + x;
+    }
+
+    private static float exact(float[] c, float x) {
+        double low = 0;
+        double high = 1;
+        for (int i = 0; i < 60; i++) {
+            final double t = (low + high) / 2;
+            if (bezier(t, c[0], c[2]) < x) low = t;
+            else high = t;
+        }
+        return (float) bezier((low + high) / 2, c[1], c[3]);
+    }
+
+    private static double bezier(double t, double p1, double p2) {
+        final double u = 1 - t;
+        return 3 * u * u * t * p1 + 3 * u * t * t * p2 + t * t * t;
+    }
+
+    /**
+     * {@code CubicBezierInterpolator#getInterpolation} as it was before the solver replaced it.
+     */
+    private static final class OldScan {
+
+        private static final int ACCURACY = 4096;
+        private final float mX1, mY1, mX2, mY2;
+        private int mLastI = 0;
+
+        OldScan(float x1, float y1, float x2, float y2) {
+            mX1 = x1;
+            mY1 = y1;
+            mX2 = x2;
+            mY2 = y2;
+        }
+
+        float getInterpolation(float input) {
+            float t = input;
+            for (int i = mLastI; i < ACCURACY; i++) {
+                t = 1.0f * i / ACCURACY;
+                double x = cubicCurves(t, 0, mX1, mX2, 1);
+                if (x >= input) {
+                    mLastI = i;
+                    break;
+                }
+            }
+            double value = cubicCurves(t, 0, mY1, mY2, 1);
+            if (value > 0.999d) {
+                value = 1;
+                mLastI = 0;
+            }
+            return (float) value;
+        }
+
+        private static double cubicCurves(double t, double value0, double value1, double value2, double value3) {
+            double u = 1 - t;
+            double tt = t * t;
+            double uu = u * u;
+            return uu * u * value0 + 3 * uu * t * value1 + 3 * u * tt * value2 + tt * t * value3;
+        }
+    }
+}
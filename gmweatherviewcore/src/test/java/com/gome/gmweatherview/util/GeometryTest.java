@@ -0,0 +1,87 @@
+package com.gome.gmweatherview.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the shared geometry against the inline code the painters used before it moved into
+ * the core module.
+ *
+ * @author Felix.Liang
+ */
+public class GeometryTest {
+
+    @Test
+    public void sineWaveMatchesPointFieldSampling() {
+        final int[][] waves = {{3, 350, 70}, {6, 350, 70}, {3, 200, 40}, {9, 120, 0}};
+        for (int[] wave : waves) {
+            final float[] actual = new float[450];
+            Geometry.sineWave(actual, wave[0], wave[1], wave[2]);
+            assertArrayEquals("wave " + wave[1], oldSineWave(450, wave[0], wave[1], wave[2]), actual, 0);
+        }
+    }
+
+    @Test
+    public void sineWaveCrossesZeroEveryWaveWidth() {
+        final float[] points = new float[2 * 101];
+        Geometry.sineWave(points, 1, 50, 10);
+        assertEquals(-50, points[0], 0);
+        for (int i = 0; i < points.length; i += 2) {
+            if ((int) points[i] % 50 == 0) assertEquals("x " + points[i], 0, points[i + 1], 1e-4f);
+        }
+    }
+
+    @Test
+    public void polygonMatchesHexagonPaths() {
+        for (float radius = 10; radius < 1000; radius *= 1.7f) {
+            for (int sides = 3; sides <= 8; sides++) {
+                final float[] actual = new float[sides * 2];
+                Geometry.polygon(actual, sides, radius);
+                assertArrayEquals("radius " + radius, oldPolygon(sides, radius), actual, 0);
+            }
+        }
+    }
+
+    @Test
+    public void polygonStartsAboveCenterAndKeepsRadius() {
+        final float[] vertices = new float[12];
+        Geometry.polygon(vertices, 6, 100);
+        assertEquals(0, vertices[0], 1e-4f);
+        assertEquals(-100, vertices[1], 1e-4f);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(100, Math.hypot(vertices[i * 2], vertices[i * 2 + 1]), 1e-3);
+        }
+    }
+
+    /**
+     * {@code PointFieldPainter.initPoints} before the move.
+     */
+    private static float[] oldSineWave(int length, int deltaX, int waveWidth, float amplitude) {
+        final float[] points = new float[length];
+        final float omega = (float) (Math.PI / waveWidth);
+        for (int i = 0; i < points.length; i++) {
+            if (i % 2 == 0) {
+                points[i] = i * deltaX - waveWidth;
+            } else {
+                float pre = points[i - 1];
+                points[i] = (float) (Math.sin(omega * pre) * amplitude);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Vertex loop of {@code SunnyPainter.updatePath} and {@code FoggyPainter.createPath}.
+     */
+    private static float[] oldPolygon(int sides, float radius) {
+        final float[] vertices = new float[sides * 2];
+        final float degree = 360f / sides;
+        for (int j = 0; j < sides; j++) {
+            vertices[j * 2] = (float) (radius * Math.sin(Math.toRadians(j * degree)));
+            vertices[j * 2 + 1] = (float) (-radius * Math.cos(Math.toRadians(j * degree)));
+        }
+        return vertices;
+    }
+}
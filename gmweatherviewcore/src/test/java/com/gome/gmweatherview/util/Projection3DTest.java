@@ -0,0 +1,176 @@
+package com.gome.gmweatherview.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link Projection3D} against matrices {@code android.graphics.Camera} produces, worked
+ * out by hand for simple cases and otherwise by a double precision port of Skia's
+ * {@code SkCamera3D::patchToMatrix} with the camera's default location.
+ *
+ * @author Felix.Liang
+ */
+public class Projection3DTest {
+
+    /**
+     * Relative error allowed for the interpolated sine table and float arithmetic.
+     */
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void identityMapsOntoItself() {
+        assertArrayEquals(new float[]{1, 0, 0, 0, 1, 0, 0, 0, 1}, values(new Projection3D()), EPSILON);
+    }
+
+    @Test
+    public void translationInPlaneMovesAndFlipsY() {
+        final Projection3D projection = new Projection3D();
+        projection.translate(100, 50, 0);
+        // Camera's y axis points up, the canvas' down
+        assertArrayEquals(new float[]{1, 0, 100, 0, 1, -50, 0, 0, 1}, values(projection), EPSILON);
+    }
+
+    @Test
+    public void translationAwayFromCameraShrinks() {
+        final Projection3D projection = new Projection3D();
+        projection.translate(0, 0, -Projection3D.CAMERA_LOCATION_Z);
+        // twice as far from the camera, half as large
+        assertArrayEquals(new float[]{0.5f, 0, 0, 0, 0.5f, 0, 0, 0, 1}, values(projection), EPSILON);
+    }
+
+    @Test
+    public void quarterTurnAroundXFoldsYIntoPerspective() {
+        final Projection3D projection = new Projection3D();
+        projection.rotateX(90);
+        assertArrayEquals(new float[]{1, 0, 0, 0, 0, 0, 0, -1 / 576f, 1}, values(projection), EPSILON);
+    }
+
+    @Test
+    public void matchesSkiaForPainterTransforms() {
+        // the translate then rotate sequence the wave painters use
+        for (float offset = -400; offset <= 400; offset += 40) {
+            for (float degrees = -360; degrees <= 360; degrees += 7.5f) {
+                final Projection3D projection = new Projection3D();
+                projection.translate(offset, 0, 0);
+                projection.rotateX(degrees);
+                assertMatches("translate " + offset + ", rotate " + degrees,
+                        skiaMatrix(offset, 0, 0, degrees), values(projection));
+            }
+        }
+    }
+
+    @Test
+    public void matchesSkiaForTranslationAfterRotation() {
+        final Projection3D projection = new Projection3D();
+        projection.rotateX(30);
+        projection.translate(20, -40, 100);
+        assertMatches("rotate 30, translate", skiaMatrixRotatedFirst(30, 20, -40, 100), values(projection));
+    }
+
+    @Test
+    public void mapPointsAppliesPerspective() {
+        final float[] values = {1, 0, 0, 0, 1, 0, 0, 0.5f, 1};
+        final float[] src = {2, 2, 4, 0};
+        final float[] dst = new float[6];
+        Projection3D.mapPoints(values, dst, 2, src, 0, 2);
+        assertArrayEquals(new float[]{0, 0, 1, 1, 4, 0}, dst, EPSILON);
+    }
+
+    @Test
+    public void sineTableMatchesMath() {
+        for (float degrees = -720; degrees <= 720; degrees += 0.37f) {
+            final double radians = Math.toRadians(degrees);
+            assertEquals(degrees + "", Math.sin(radians), Projection3D.sinDegrees(degrees), EPSILON);
+            assertEquals(degrees + "", Math.cos(radians), Projection3D.cosDegrees(degrees), EPSILON);
+        }
+    }
+
+    private static float[] values(Projection3D projection) {
+        final float[] values = new float[9];
+        projection.getValues(values);
+        return values;
+    }
+
+    private static void assertMatches(String message, double[] expected, float[] actual) {
+        for (int i = 0; i < 9; i++) {
+            final double tolerance = EPSILON * Math.max(1, Math.abs(expected[i]));
+            assertEquals(message + " [" + i + "]", expected[i], actual[i], tolerance);
+        }
+    }
+
+    /**
+     * {@code Camera.translate(x, y, z); Camera.rotateX(degrees); Camera.getMatrix()}.
+     */
+    private static double[] skiaMatrix(double x, double y, double z, double degrees) {
+        final double[][] m = translation(x, y, z);
+        return patchToMatrix(multiply(m, rotationX(degrees)));
+    }
+
+    /**
+     * {@code Camera.rotateX(degrees); Camera.translate(x, y, z); Camera.getMatrix()}.
+     */
+    private static double[] skiaMatrixRotatedFirst(double degrees, double x, double y, double z) {
+        return patchToMatrix(multiply(rotationX(degrees), translation(x, y, z)));
+    }
+
+    private static double[][] translation(double x, double y, double z) {
+        return new double[][]{{1, 0, 0, x}, {0, 1, 0, y}, {0, 0, 1, z}};
+    }
+
+    /**
+     * {@code SkMatrix3D::setRotateX}.
+     */
+    private static double[][] rotationX(double degrees) {
+        final double s = Math.sin(Math.toRadians(degrees));
+        final double c = Math.cos(Math.toRadians(degrees));
+        return new double[][]{{1, 0, 0, 0}, {0, c, -s, 0}, {0, s, c, 0}};
+    }
+
+    /**
+     * Product of two affine 3x4 matrices, as {@code Sk3DView}'s pre-concatenation builds it.
+     */
+    private static double[][] multiply(double[][] a, double[][] b) {
+        final double[][] result = new double[3][4];
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 4; col++) {
+                double sum = col == 3 ? a[row][3] : 0;
+                for (int k = 0; k < 3; k++) sum += a[row][k] * b[k][col];
+                result[row][col] = sum;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@code SkCamera3D::patchToMatrix} for the default camera: location and observer at
+     * (0, 0, -576), axis (0, 0, 1) and zenith (0, -1, 0), applied to the unit patch transformed
+     * by {@code m}.
+     */
+    private static double[] patchToMatrix(double[][] m) {
+        final double[] u = mapVector(m, 1, 0, 0);
+        final double[] v = mapVector(m, 0, -1, 0);
+        final double[] diff = {m[0][3], m[1][3], m[2][3] + 576};
+        // orientation rows from SkCamera3D::doUpdate
+        final double[] row0 = {576, 0, 0};
+        final double[] row1 = {0, -576, 0};
+        final double[] row2 = {0, 0, 1};
+        final double dot = dot(diff, row2);
+        return new double[]{
+                dot(u, row0) / dot, dot(v, row0) / dot, dot(diff, row0) / dot,
+                dot(u, row1) / dot, dot(v, row1) / dot, dot(diff, row1) / dot,
+                dot(u, row2) / dot, dot(v, row2) / dot, 1};
+    }
+
+    private static double[] mapVector(double[][] m, double x, double y, double z) {
+        return new double[]{
+                m[0][0] * x + m[0][1] * y + m[0][2] * z,
+                m[1][0] * x + m[1][1] * y + m[1][2] * z,
+                m[2][0] * x + m[2][1] * y + m[2][2] * z};
+    }
+
+    private static double dot(double[] a, double[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+}
@@ -0,0 +1,99 @@
+package com.gome.gmweatherview.benchmark;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Shader;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the fill rate the cached background saves on a 1440p surface: what every frame used
+ * to spend on the background, a clear pass and a full screen gradient, against the blit of the
+ * cached bitmap that replaced it. Results are written as JSON to {@value #RESULT_FILE} in the
+ * external files directory of the test app and to logcat.
+ *
+ * @author Felix.Liang
+ */
+@RunWith(AndroidJUnit4.class)
+public class BackgroundFillBenchmarkTest {
+
+    private static final String TAG = "BackgroundFillBenchmark";
+    private static final String RESULT_FILE = "background_fill_benchmark.json";
+    private static final int WIDTH = 1440;
+    private static final int HEIGHT = 2560;
+    private static final int WARMUP_FRAMES = 60;
+    private static final int MEASURED_FRAMES = 300;
+    private static final int[] COLORS = {0xFFEF643C, 0xFFDEE3D1, 0xFFD6EAE3};
+    private static final float[] POSITIONS = {0, 0.8f, 1};
+
+    @Test
+    public void benchmarkBackgroundFill() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final Bitmap target = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(target);
+        final Paint clearPaint = new Paint();
+        clearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+        final Paint gradientPaint = new Paint(Paint.DITHER_FLAG);
+        gradientPaint.setShader(new LinearGradient(0, 0, 0, HEIGHT, COLORS, POSITIONS, Shader.TileMode.CLAMP));
+        final Bitmap cached = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        new Canvas(cached).drawPaint(gradientPaint);
+
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            canvas.drawPaint(clearPaint);
+            canvas.drawPaint(gradientPaint);
+            canvas.drawBitmap(cached, 0, 0, null);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            canvas.drawPaint(clearPaint);
+            canvas.drawPaint(gradientPaint);
+        }
+        final double gradientMs = (System.nanoTime() - start) / 1e6 / MEASURED_FRAMES;
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            canvas.drawBitmap(cached, 0, 0, null);
+        }
+        final double cachedMs = (System.nanoTime() - start) / 1e6 / MEASURED_FRAMES;
+        cached.recycle();
+        target.recycle();
+
+        writeResults(context, new JSONObject().put("width", WIDTH)
+                .put("height", HEIGHT)
+                .put("frames", MEASURED_FRAMES)
+                .put("gradientMsPerFrame", gradientMs)
+                .put("cachedMsPerFrame", cachedMs));
+        assertTrue("cached background " + cachedMs + "ms is not cheaper than " + gradientMs + "ms",
+                cachedMs < gradientMs);
+    }
+
+    private static void writeResults(Context context, JSONObject results) throws IOException, JSONException {
+        final String json = results.toString(2);
+        Log.i(TAG, json);
+        final File dir = context.getExternalFilesDir(null);
+        if (dir == null) return;
+        final OutputStream out = new FileOutputStream(new File(dir, RESULT_FILE));
+        try {
+            out.write(json.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
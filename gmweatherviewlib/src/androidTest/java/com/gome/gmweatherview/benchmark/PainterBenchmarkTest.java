@@ -0,0 +1,181 @@
+package com.gome.gmweatherview.benchmark;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.base.Painter;
+import com.gome.gmweatherview.graphics.RainyPainter;
+import com.gome.gmweatherview.util.PainterFactory;
+import com.gome.gmweatherview.widget.WeatherView;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders every painter into an offscreen bitmap for a fixed number of frames at several
+ * resolutions and render scales, and compares ms, allocations and draw calls per frame against the budgets in
+ * {@value #THRESHOLDS_ASSET}. Frames are advanced by a fixed 60fps step and random painters
+ * are seeded, so every run draws the same frames. Results are written as JSON to
+ * {@value #RESULT_FILE} in the external files directory of the test app and to logcat.
+ *
+ * @author Felix.Liang
+ */
+@RunWith(AndroidJUnit4.class)
+public class PainterBenchmarkTest {
+
+    private static final String TAG = "PainterBenchmark";
+    private static final String THRESHOLDS_ASSET = "painter_thresholds.json";
+    private static final String RESULT_FILE = "painter_benchmark.json";
+    private static final long SEED = 20170601L;
+    private static final int WARMUP_FRAMES = 60;
+    private static final int MEASURED_FRAMES = 300;
+    private static final int[][] RESOLUTIONS = {{360, 640}, {720, 1280}, {1080, 1920}};
+    private static final float[] RENDER_SCALES = {1f, 0.75f, 0.5f};
+    private static final int[] TYPES = {
+            WeatherView.TYPE_CLOUDY, WeatherView.TYPE_SUNNY, WeatherView.TYPE_OVERCAST,
+            WeatherView.TYPE_SANDY, WeatherView.TYPE_SNOWY, WeatherView.TYPE_RAINY,
+            WeatherView.TYPE_FOGGY, WeatherView.TYPE_HAZY};
+
+    @Test
+    public void benchmarkPainters() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final JSONObject thresholds = readThresholds();
+        final JSONArray results = new JSONArray();
+        final List<String> regressions = new ArrayList<>();
+        for (int[] resolution : RESOLUTIONS) {
+            for (float scale : RENDER_SCALES) {
+                final int width = Math.round(resolution[0] * scale);
+                final int height = Math.round(resolution[1] * scale);
+                final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                final Canvas canvas = new Canvas(bitmap);
+                for (int type : TYPES) {
+                    final Painter painter = PainterFactory.createPainter(context, type);
+                    final Result result = run(painter, canvas, width, height, scale);
+                    results.put(result.toJson());
+                    checkThresholds(result, thresholds.optJSONObject(result.painter), regressions);
+                }
+                bitmap.recycle();
+            }
+        }
+        writeResults(context, results);
+        assertTrue("painters over budget: " + regressions, regressions.isEmpty());
+    }
+
+    private Result run(Painter painter, Canvas canvas, int width, int height, float scale) {
+        if (painter instanceof RainyPainter) ((RainyPainter) painter).setSeed(SEED);
+        painter.onAttachedToView();
+        if (painter instanceof AbsPainter) ((AbsPainter) painter).setSize(width, height, scale);
+        else painter.setSize(width, height);
+        for (int i = 0; i < WARMUP_FRAMES; i++) drawFrame(painter, canvas);
+
+        long drawCalls = 0;
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        final long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            drawFrame(painter, canvas);
+            if (painter instanceof AbsPainter) drawCalls += ((AbsPainter) painter).getDrawCallCount();
+        }
+        final long elapsed = System.nanoTime() - start;
+        final int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+        painter.onDetachedFromView();
+
+        final Result result = new Result();
+        result.painter = painter.getClass().getSimpleName();
+        result.width = width;
+        result.height = height;
+        result.scale = scale;
+        result.msPerFrame = elapsed / 1e6 / MEASURED_FRAMES;
+        result.allocationsPerFrame = (double) allocations / MEASURED_FRAMES;
+        result.drawCallsPerFrame = (double) drawCalls / MEASURED_FRAMES;
+        return result;
+    }
+
+    private static void drawFrame(Painter painter, Canvas canvas) {
+        final int count = canvas.save();
+        painter.draw(canvas, AbsPainter.REFERENCE_FRAME_NANOS);
+        canvas.restoreToCount(count);
+    }
+
+    private static void checkThresholds(Result result, JSONObject budget, List<String> regressions) {
+        if (budget == null) return;
+        check(result, "msPerFrame", result.msPerFrame, budget, regressions);
+        check(result, "allocationsPerFrame", result.allocationsPerFrame, budget, regressions);
+        check(result, "drawCallsPerFrame", result.drawCallsPerFrame, budget, regressions);
+    }
+
+    private static void check(Result result, String key, double value, JSONObject budget, List<String> regressions) {
+        if (budget.has(key) && value > budget.optDouble(key)) {
+            regressions.add(result.painter + "@" + result.width + "x" + result.height + " scale=" + result.scale
+                    + " " + key + "=" + value + " > " + budget.optDouble(key));
+        }
+    }
+
+    private static JSONObject readThresholds() throws IOException, JSONException {
+        final InputStream in = InstrumentationRegistry.getContext().getAssets().open(THRESHOLDS_ASSET);
+        try {
+            final Scanner scanner = new Scanner(in, "UTF-8").useDelimiter("\\A");
+            return new JSONObject(scanner.hasNext() ? scanner.next() : "{}");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeResults(Context context, JSONArray results) throws IOException, JSONException {
+        final String json = new JSONObject().put("seed", SEED)
+                .put("frames", MEASURED_FRAMES)
+                .put("results", results)
+                .toString(2);
+        Log.i(TAG, json);
+        final File dir = context.getExternalFilesDir(null);
+        if (dir == null) return;
+        final OutputStream out = new FileOutputStream(new File(dir, RESULT_FILE));
+        try {
+            out.write(json.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static class Result {
+
+        String painter;
+        int width;
+        int height;
+        float scale;
+        double msPerFrame;
+        double allocationsPerFrame;
+        double drawCallsPerFrame;
+
+        JSONObject toJson() throws JSONException {
+            return new JSONObject().put("painter", painter)
+                    .put("width", width)
+                    .put("height", height)
+                    .put("scale", scale)
+                    .put("msPerFrame", msPerFrame)
+                    .put("allocationsPerFrame", allocationsPerFrame)
+                    .put("drawCallsPerFrame", drawCallsPerFrame);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.gome.gmweatherview.graphics;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.util.PainterFactory;
+import com.gome.gmweatherview.widget.WeatherView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Draws every painter at every quality tier until its caches are built, then fails if any of
+ * the following steady state frames allocates on the drawing thread.
+ *
+ * @author Felix.Liang
+ */
+@RunWith(AndroidJUnit4.class)
+public class PainterAllocationTest {
+
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 1280;
+    private static final int WARMUP_FRAMES = 60;
+    private static final int MEASURED_FRAMES = 120;
+    private static final int[] QUALITIES = {
+            AbsPainter.QUALITY_HIGH, AbsPainter.QUALITY_MEDIUM, AbsPainter.QUALITY_LOW};
+    private static final int[] TYPES = {
+            WeatherView.TYPE_CLOUDY, WeatherView.TYPE_SUNNY, WeatherView.TYPE_OVERCAST,
+            WeatherView.TYPE_SANDY, WeatherView.TYPE_SNOWY, WeatherView.TYPE_RAINY,
+            WeatherView.TYPE_FOGGY, WeatherView.TYPE_HAZY};
+
+    @Test
+    public void drawDoesNotAllocate() {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        final List<String> failures = new ArrayList<>();
+        for (int type : TYPES) {
+            final AbsPainter painter = (AbsPainter) PainterFactory.createPainter(context, type);
+            painter.onAttachedToView();
+            painter.setSize(WIDTH, HEIGHT);
+            for (int quality : QUALITIES) {
+                painter.setQuality(quality);
+                for (int i = 0; i < WARMUP_FRAMES; i++) drawFrame(painter, canvas);
+                final int allocations = countAllocations(painter, canvas);
+                if (allocations != 0) {
+                    failures.add(painter.getClass().getSimpleName() + " at quality " + quality
+                            + ": " + allocations + " allocations in " + MEASURED_FRAMES + " frames");
+                }
+            }
+            painter.onDetachedFromView();
+        }
+        bitmap.recycle();
+        assertTrue("painters allocating while drawing: " + failures, failures.isEmpty());
+    }
+
+    private static int countAllocations(AbsPainter painter, Canvas canvas) {
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < MEASURED_FRAMES; i++) drawFrame(painter, canvas);
+        final int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+        return allocations;
+    }
+
+    private static void drawFrame(AbsPainter painter, Canvas canvas) {
+        final int count = canvas.save();
+        painter.draw(canvas, AbsPainter.REFERENCE_FRAME_NANOS);
+        canvas.restoreToCount(count);
+    }
+}
@@ -0,0 +1,75 @@
+package com.gome.gmweatherview.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.util.PainterFactory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bakes the periodic weathers the way {@link WeatherView} does and checks that the loop covers
+ * exactly one period of the painter once it is sized.
+ *
+ * @author Felix.Liang
+ */
+@RunWith(AndroidJUnit4.class)
+public class BakedLoopTest {
+
+    private static final int WIDTH = 360;
+    private static final int HEIGHT = 640;
+    private static final float RENDER_SCALE = 1f;
+    private static final float SCALE = 0.5f;
+    private static final int FPS = 20;
+    private static final long MAX_BYTES = 16 * 1024 * 1024;
+    private static final int[] PERIODIC_TYPES = {WeatherView.TYPE_CLOUDY, WeatherView.TYPE_OVERCAST};
+    private static final int[] LIVE_TYPES = {WeatherView.TYPE_HAZY, WeatherView.TYPE_SANDY};
+
+    @Test
+    public void periodicWeathersBake() {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        for (int type : PERIODIC_TYPES) {
+            final BakedLoop loop = BakedLoop.bake(context, type, WIDTH, HEIGHT, RENDER_SCALE, SCALE, FPS, MAX_BYTES);
+            assertNotNull("weather " + type + " not baked", loop);
+            assertTrue(loop.matches(type, WIDTH, HEIGHT, RENDER_SCALE));
+            final long loopNanos = loopDurationNanos(context, type);
+            final long frameNanos = 1000000000L / FPS;
+            assertTrue("weather " + type + " loop of " + loop.getLoopNanos() + "ns, painter repeats after "
+                    + loopNanos + "ns", Math.abs(loop.getLoopNanos() - loopNanos) < frameNanos);
+            final Bitmap frame = loop.decode(0, null, new BitmapFactory.Options());
+            assertNotNull(frame);
+            assertEquals(Math.round(WIDTH * SCALE), frame.getWidth());
+            assertEquals(Math.round(HEIGHT * SCALE), frame.getHeight());
+            frame.recycle();
+        }
+    }
+
+    @Test
+    public void longLoopsAreRenderedLive() {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        for (int type : LIVE_TYPES) {
+            assertTrue("weather " + type + " repeats within the limit",
+                    loopDurationNanos(context, type) > BakedLoop.MAX_LOOP_NANOS);
+            assertNull(BakedLoop.bake(context, type, WIDTH, HEIGHT, RENDER_SCALE, SCALE, FPS, Long.MAX_VALUE));
+        }
+    }
+
+    private static long loopDurationNanos(Context context, int type) {
+        final AbsPainter painter = (AbsPainter) PainterFactory.createPainter(context, type);
+        painter.onAttachedToView();
+        painter.setSize(WIDTH, HEIGHT, RENDER_SCALE);
+        final long loopNanos = painter.getLoopDurationNanos();
+        painter.onDetachedFromView();
+        return loopNanos;
+    }
+}
@@ -0,0 +1,108 @@
+package com.gome.gmweatherview.widget;
+
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Switches the weather of a rendering {@link WeatherView} as fast as the UI thread allows and
+ * fails if the render thread throws or keeps drawing anything but the weather set last.
+ *
+ * @author Felix.Liang
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeatherViewStressTest {
+
+    private static final int SWITCHES = 3000;
+    private static final int SWITCHES_PER_BATCH = 25;
+    private static final int TRANSITION_MILLIS = 100;
+    private static final long START_TIMEOUT_MILLIS = 5000;
+    private static final long SETTLE_MILLIS = 500;
+    private static final int[] TYPES = {
+            WeatherView.TYPE_NONE, WeatherView.TYPE_CLOUDY, WeatherView.TYPE_SUNNY,
+            WeatherView.TYPE_OVERCAST, WeatherView.TYPE_SANDY, WeatherView.TYPE_SNOWY,
+            WeatherView.TYPE_RAINY, WeatherView.TYPE_FOGGY, WeatherView.TYPE_HAZY};
+
+    @Rule
+    public final ActivityTestRule<WeatherViewTestActivity> mActivityRule =
+            new ActivityTestRule<>(WeatherViewTestActivity.class);
+
+    @Test
+    public void switchingWeatherWhileRendering() throws Throwable {
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable e) {
+                errors.add(e);
+            }
+        });
+        try {
+            final WeatherView view = mActivityRule.getActivity().getWeatherView();
+            mActivityRule.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    view.setTransitionDuration(TRANSITION_MILLIS);
+                    view.setFrameStatsEnabled(true);
+                    view.setWeather(WeatherView.TYPE_CLOUDY);
+                }
+            });
+            awaitFrames(view);
+
+            for (int i = 0; i < SWITCHES; i += SWITCHES_PER_BATCH) {
+                final int first = i;
+                mActivityRule.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int j = first; j < first + SWITCHES_PER_BATCH; j++) {
+                            // mix in prewarmed switches so stale callbacks race the plain ones
+                            final int type = TYPES[j % TYPES.length];
+                            if (j % 3 == 0) view.setWeatherAsync(type);
+                            else view.setWeather(type);
+                        }
+                    }
+                });
+            }
+            final long framesWhileSwitching = view.getFrameStats().getFrameCount();
+
+            mActivityRule.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    view.setWeather(WeatherView.TYPE_SNOWY);
+                }
+            });
+            // let the last transition and any pending prewarm finish before looking again
+            Thread.sleep(SETTLE_MILLIS);
+            view.resetFrameStats();
+            Thread.sleep(SETTLE_MILLIS);
+            final FrameStats stats = view.getFrameStats();
+
+            assertTrue("render thread threw " + errors, errors.isEmpty());
+            assertTrue("no frames while switching", framesWhileSwitching > 0);
+            assertTrue("no frames after switching", stats.getFrameCount() > 0);
+            assertEquals("painters drawn after switching", 1, stats.getPainterCount());
+            assertEquals("SnowyPainter", stats.getPainterName(0));
+            assertEquals("frames of the last weather", stats.getFrameCount(), stats.getPainterFrameCount(0));
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+        }
+    }
+
+    private static void awaitFrames(WeatherView view) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+        while (view.getFrameStats().getFrameCount() == 0) {
+            assertTrue("view never rendered", System.currentTimeMillis() < deadline);
+            Thread.sleep(16);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.gome.gmweatherview.widget;
+
+import android.app.Activity;
+import android.os.Bundle;
+
+/**
+ * Shows a single full screen {@link WeatherView} for instrumented tests.
+ *
+ * @author Felix.Liang
+ */
+public class WeatherViewTestActivity extends Activity {
+
+    private WeatherView mWeatherView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mWeatherView = new WeatherView(this);
+        setContentView(mWeatherView);
+    }
+
+    public WeatherView getWeatherView() {
+        return mWeatherView;
+    }
+}
@@ -1,47 +1,451 @@
 package com.gome.gmweatherview.base;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.support.annotation.IntDef;
+import android.util.SparseArray;
 
 import com.gome.gmweatherview.util.SizeTransformer;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
 /**
  * @author Felix.Liang
  */
 @SuppressWarnings({"WeakerAccess", "unused"})
 public abstract class AbsPainter implements Painter {
 
+    /**
+     * Duration of the 60fps frame the per-frame animation steps were tuned for.
+     */
+    public static final long REFERENCE_FRAME_NANOS = 1000000000L / 60;
+
+    @IntDef({QUALITY_LOW, QUALITY_MEDIUM, QUALITY_HIGH})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Quality {
+    }
+
+    public static final int QUALITY_LOW = 0;
+    public static final int QUALITY_MEDIUM = 1;
+    public static final int QUALITY_HIGH = 2;
+    /**
+     * Rough size of one recorded layer, i.e. its picture with the paths and paints it copied.
+     */
+    private static final int LAYER_ESTIMATE_BYTES = 4 * 1024;
+    private static final int PATH_ESTIMATE_BYTES = 128;
+    private static final int PATH_POINT_BYTES = 9;
+    private static final int ARRAY_ESTIMATE_BYTES = 16;
+
     private int mWidth;
     private int mHeight;
+    private int mSurfaceWidth;
+    private int mSurfaceHeight;
+    private float mRenderScale = 1f;
     private Context mContext;
     protected Paint mDefaultPaint;
+    private Bitmap mBackground;
+    private boolean mBackgroundValid;
+    private final ViewportCuller mCuller = new ViewportCuller();
+    private int mDrawCalls;
+    private int mLastDrawCalls;
+    private int mAttachCount;
+    private int mPinCount;
+    private boolean mPrewarming;
+    private boolean mResourcesValid;
+    private int mQuality = QUALITY_HIGH;
+    private final SparseArray<Layer> mLayers = new SparseArray<>();
+    private volatile int mLayerCount;
+    private final RectF mLayerBounds = new RectF();
+    private volatile boolean mChangesPending;
 
     public AbsPainter(Context context) {
         mContext = context.getApplicationContext();
     }
 
+    /**
+     * Rebuilds the size dependent resources only if they were released since the last time,
+     * unless {@link #prewarm(int, int, float, int)} is building them right now.
+     */
     @Override
-    public void onAttachedToView() {
-        if (mWidth != 0 || mHeight != 0) onSizeChanged(mWidth, mHeight);
+    public synchronized void onAttachedToView() {
+        mAttachCount++;
+        if (!mPrewarming) ensureResources();
     }
 
     @Override
     public void onDetachedFromView() {
+        synchronized (this) {
+            mAttachCount--;
+            if (mAttachCount == 0) releaseBackground();
+        }
+    }
+
+    /**
+     * @return whether a view currently renders this painter
+     */
+    public synchronized boolean isAttached() {
+        return mAttachCount > 0;
+    }
+
+    /**
+     * Keeps {@link #trimMemory()} away from a painter that was handed to a view which has not
+     * attached it yet, so it is not torn down right before its first frame. Every call must be
+     * matched by {@link #unpin()}.
+     */
+    public synchronized void pin() {
+        mPinCount++;
+    }
+
+    public synchronized void unpin() {
+        if (mPinCount > 0) mPinCount--;
+    }
+
+    /**
+     * @return whether a view holds this painter, whether or not it renders it yet
+     */
+    public synchronized boolean isPinned() {
+        return mPinCount > 0;
+    }
+
+    /**
+     * Releases the heavy resources of a painter that no view renders, such as cached bitmaps.
+     * They are rebuilt on demand once the painter is drawn again. Does nothing while attached,
+     * pinned or being prewarmed.
+     *
+     * @return whether the resources were released
+     */
+    public synchronized boolean trimMemory() {
+        if (mAttachCount > 0 || mPinCount > 0 || mPrewarming) return false;
+        releaseBackground();
+        invalidateLayers();
+        onTrimMemory();
+        mResourcesValid = false;
+        return true;
+    }
+
+    /**
+     * Builds the size dependent resources and the background of a painter that no view renders
+     * yet, so its first frame on screen does not have to, then draws {@code frames} frames
+     * off screen without advancing the animation to fill the lazily built caches. Meant to be
+     * called off the UI thread on a painter the caller keeps from views, e.g. by pinning it.
+     * {@code w}, {@code h} and {@code renderScale} are those the view will pass to
+     * {@link #setSize(int, int, float)}, so the background is built at the surface size.
+     * The lock is held only to mark the painter busy, so {@link #trimMemory()} and
+     * {@link #onAttachedToView()} never wait for the work.
+     *
+     * @return false if the painter is attached or already being prewarmed and was left untouched
+     */
+    public boolean prewarm(int w, int h, float renderScale, int frames) {
+        synchronized (this) {
+            if (mAttachCount > 0 || mPrewarming || w <= 0 || h <= 0) return false;
+            mPrewarming = true;
+        }
+        try {
+            setSize(w, h, renderScale);
+            ensureResources();
+            if (!mBackgroundValid) buildBackground();
+            if (frames > 0) {
+                final Bitmap bitmap = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+                final Canvas canvas = new Canvas(bitmap);
+                for (int i = 0; i < frames; i++) {
+                    final int count = canvas.save();
+                    draw(canvas, 0);
+                    canvas.restoreToCount(count);
+                }
+                bitmap.recycle();
+            }
+        } finally {
+            synchronized (this) {
+                mPrewarming = false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether {@link #prewarm(int, int, float, int)} is building this painter's resources
+     */
+    public synchronized boolean isPrewarming() {
+        return mPrewarming;
+    }
+
+    private void ensureResources() {
+        if (!mResourcesValid && (mWidth != 0 || mHeight != 0)) {
+            onSizeChanged(mWidth, mHeight);
+            mResourcesValid = true;
+        }
+    }
+
+    /**
+     * Called from {@link #trimMemory()} to drop resources that are built again on demand.
+     */
+    protected void onTrimMemory() {
     }
 
+    /**
+     * @return rough number of bytes held by this painter's cached resources
+     */
+    public long getMemoryEstimate() {
+        final Bitmap background = mBackground;
+        return (background != null ? background.getByteCount() : 0)
+                + (long) mLayerCount * LAYER_ESTIMATE_BYTES + onEstimateMemory();
+    }
+
+    /**
+     * @return bytes held by the painter's own paths, bitmaps and arrays, which stay around while
+     * no view renders it
+     */
+    protected long onEstimateMemory() {
+        return 0;
+    }
+
+    /**
+     * @return rough bytes held by a path of {@code points} points
+     */
+    protected static long estimatePath(int points) {
+        return PATH_ESTIMATE_BYTES + (long) points * PATH_POINT_BYTES;
+    }
+
+    /**
+     * @return bytes held by a float array of {@code length} elements
+     */
+    protected static long estimateFloats(int length) {
+        return ARRAY_ESTIMATE_BYTES + 4L * length;
+    }
+
+    /**
+     * Sets the size of the surface, keeping the current render scale.
+     */
     @Override
     public void setSize(int w, int h) {
-        if (mWidth != w || mHeight != h) {
-            mWidth = w;
-            mHeight = h;
-            onSizeChanged(w, h);
+        setSize(w, h, mRenderScale);
+    }
+
+    /**
+     * Sets the size of a surface rendered at {@code renderScale} of the size it is shown at.
+     * Subclasses keep working in the displayed size, see {@link #getWidth()}, and their
+     * drawing is scaled down to the surface, so dp based sizes look the same at any scale.
+     */
+    public void setSize(int w, int h, float renderScale) {
+        applyChanges();
+        if (mSurfaceWidth == w && mSurfaceHeight == h && mRenderScale == renderScale) return;
+        final int width = renderScale == 1f ? w : Math.round(w / renderScale);
+        final int height = renderScale == 1f ? h : Math.round(h / renderScale);
+        mSurfaceWidth = w;
+        mSurfaceHeight = h;
+        mRenderScale = renderScale;
+        invalidateBackground();
+        if (mWidth != width || mHeight != height) {
+            mWidth = width;
+            mHeight = height;
+            invalidateLayers();
+            mResourcesValid = false;
+            ensureResources();
         }
     }
 
+    /**
+     * @return ratio of the surface size to the size the painter draws for
+     */
+    public float getRenderScale() {
+        return mRenderScale;
+    }
+
     protected void onSizeChanged(int w, int h) {
     }
 
+    @Override
+    public void draw(Canvas canvas, long elapsedNanos) {
+        applyChanges();
+        mCuller.beginFrame();
+        mDrawCalls = 0;
+        drawBackground(canvas);
+        if (mRenderScale != 1f) {
+            final int count = canvas.save();
+            canvas.scale(mRenderScale, mRenderScale);
+            onDraw(canvas, elapsedNanos);
+            canvas.restoreToCount(count);
+        } else {
+            onDraw(canvas, elapsedNanos);
+        }
+        mCuller.endFrame();
+        mLastDrawCalls = mDrawCalls;
+    }
+
+    /**
+     * Hands settings changed from another thread to the thread that draws. Setters store the
+     * requested value in a volatile field and call this; {@link #onApplyChanges()} then picks
+     * it up at the start of the next frame or size change, so drawing never sees half-rebuilt
+     * geometry and the caller never waits for the render thread.
+     */
+    protected void requestApplyChanges() {
+        mChangesPending = true;
+    }
+
+    private void applyChanges() {
+        if (mChangesPending) {
+            mChangesPending = false;
+            onApplyChanges();
+        }
+    }
+
+    /**
+     * Called on the drawing thread before the next frame or size change after
+     * {@link #requestApplyChanges()}, to apply the requested settings.
+     */
+    protected void onApplyChanges() {
+    }
+
+    /**
+     * Draws the animated content on top of the cached background.
+     */
+    protected abstract void onDraw(Canvas canvas, long elapsedNanos);
+
+    /**
+     * @return shader filling the static background at the given size, or null for none
+     */
+    protected Shader onCreateBackgroundShader(int w, int h) {
+        return null;
+    }
+
+    /**
+     * Drops the cached background so it is rendered again before the next frame, e.g. after
+     * the palette changed.
+     */
+    protected void invalidateBackground() {
+        mBackgroundValid = false;
+    }
+
+    /**
+     * Draws a layer of static geometry, recording it into a {@link Picture} the first time so
+     * later frames replay it under the current transform instead of issuing its draw calls
+     * again. Painters opt in per layer by drawing it through this method and implementing
+     * {@link #onRecordLayer(int, Canvas)}. Paints the layer uses must not change between
+     * {@link #invalidateLayers()} calls.
+     *
+     * @param layer id of the layer, chosen by the painter
+     * @see #prepareLayer(int)
+     */
+    protected void drawLayer(Canvas canvas, int layer) {
+        Layer recorded = mLayers.get(layer);
+        if (recorded == null) recorded = putLayer(layer);
+        final int count = canvas.save();
+        canvas.translate(recorded.left, recorded.top);
+        canvas.drawPicture(recorded.picture);
+        canvas.restoreToCount(count);
+        countDrawCalls(1);
+    }
+
+    /**
+     * Records a layer ahead of its first {@link #drawLayer(Canvas, int)}, so that no frame pays
+     * for the recording and its allocations. Painters call it where the layer was invalidated,
+     * i.e. from {@link #onSizeChanged(int, int)} and {@link #onQualityChanged(int)}. Does nothing
+     * if the layer is already recorded or the painter has no size yet.
+     */
+    protected void prepareLayer(int layer) {
+        if (mWidth > 0 && mHeight > 0 && mLayers.get(layer) == null) putLayer(layer);
+    }
+
+    private Layer putLayer(int layer) {
+        final Layer recorded = recordLayer(layer);
+        mLayers.put(layer, recorded);
+        mLayerCount = mLayers.size();
+        return recorded;
+    }
+
+    private Layer recordLayer(int layer) {
+        final RectF bounds = mLayerBounds;
+        bounds.set(0, 0, mWidth, mHeight);
+        onGetLayerBounds(layer, bounds);
+        final Layer recorded = new Layer(bounds.left, bounds.top);
+        final Canvas canvas = recorded.picture.beginRecording(
+                Math.max(1, (int) Math.ceil(bounds.width())), Math.max(1, (int) Math.ceil(bounds.height())));
+        canvas.translate(-bounds.left, -bounds.top);
+        onRecordLayer(layer, canvas);
+        recorded.picture.endRecording();
+        return recorded;
+    }
+
+    /**
+     * Draws the content of a layer into the recording canvas, in the coordinates the layer is
+     * later drawn in.
+     */
+    protected void onRecordLayer(int layer, Canvas canvas) {
+    }
+
+    /**
+     * Sets the area a layer draws into, in layer coordinates. Defaults to the painter's size
+     * from the origin.
+     */
+    protected void onGetLayerBounds(int layer, RectF bounds) {
+    }
+
+    /**
+     * Drops the recorded layers so they are recorded again when next drawn, e.g. after the
+     * palette changed. Size and quality changes do this on their own.
+     */
+    protected void invalidateLayers() {
+        mLayers.clear();
+        mLayerCount = 0;
+    }
+
+    private static final class Layer {
+
+        final Picture picture = new Picture();
+        final float left;
+        final float top;
+
+        Layer(float left, float top) {
+            this.left = left;
+            this.top = top;
+        }
+    }
+
+    private void drawBackground(Canvas canvas) {
+        if (!mBackgroundValid) buildBackground();
+        if (mBackground != null) {
+            canvas.drawBitmap(mBackground, 0, 0, null);
+            countDrawCalls(1);
+        }
+    }
+
+    private void buildBackground() {
+        mBackgroundValid = true;
+        final Shader shader = mWidth > 0 && mHeight > 0 ? onCreateBackgroundShader(mWidth, mHeight) : null;
+        if (shader == null) {
+            releaseBackground();
+            return;
+        }
+        if (mBackground == null || mBackground.getWidth() != mSurfaceWidth
+                || mBackground.getHeight() != mSurfaceHeight) {
+            if (mBackground != null) mBackground.recycle();
+            mBackground = Bitmap.createBitmap(mSurfaceWidth, mSurfaceHeight, Bitmap.Config.ARGB_8888);
+        }
+        final Paint paint = new Paint(isSmooth() ? Paint.DITHER_FLAG : 0);
+        paint.setShader(shader);
+        final Canvas canvas = new Canvas(mBackground);
+        canvas.scale(mRenderScale, mRenderScale);
+        canvas.drawPaint(paint);
+    }
+
+    private void releaseBackground() {
+        if (mBackground != null) {
+            mBackground.recycle();
+            mBackground = null;
+        }
+        mBackgroundValid = false;
+    }
+
+    /**
+     * @return width the painter draws for, which is the surface width divided by the render scale
+     */
     protected int getWidth() {
         return mWidth;
     }
@@ -50,10 +454,86 @@ public abstract class AbsPainter implements Painter {
         return mHeight;
     }
 
+    /**
+     * @return culler for geometry that may fall outside the viewport, set up by the painter
+     * through {@link ViewportCuller#setViewport(int, int, android.graphics.Matrix, float)}
+     */
+    protected ViewportCuller getCuller() {
+        return mCuller;
+    }
+
+    /**
+     * @return number of segments or points that were culled during the last frame
+     */
+    public int getCulledCount() {
+        return mCuller.getCulledCount();
+    }
+
+    /**
+     * Adds to the number of canvas draw calls issued during the current frame. Painters call
+     * this next to their draw calls so the count can be reported by the frame statistics.
+     */
+    protected void countDrawCalls(int count) {
+        mDrawCalls += count;
+    }
+
+    /**
+     * @return number of canvas draw calls issued during the last frame
+     */
+    public int getDrawCallCount() {
+        return mLastDrawCalls;
+    }
+
     protected Context getContext() {
         return mContext;
     }
 
+    /**
+     * Sets how much detail the painter draws. Lower tiers draw fewer lines, points or rings
+     * and drop anti-aliasing and dithering. Call on the thread that draws.
+     */
+    public void setQuality(@Quality int quality) {
+        if (mQuality != quality) {
+            mQuality = quality;
+            invalidateBackground();
+            invalidateLayers();
+            onQualityChanged(quality);
+        }
+    }
+
+    @Quality
+    public int getQuality() {
+        return mQuality;
+    }
+
+    /**
+     * Called when the quality tier changed, to adjust counts and paints.
+     */
+    protected void onQualityChanged(@Quality int quality) {
+    }
+
+    /**
+     * @return whether paints should anti-alias and dither at the current quality
+     */
+    protected boolean isSmooth() {
+        return mQuality != QUALITY_LOW;
+    }
+
+    /**
+     * @return time after which the animation repeats exactly, or 0 if it never does
+     */
+    public long getLoopDurationNanos() {
+        return 0;
+    }
+
+    /**
+     * Converts elapsed time into a number of reference frames, so that an animation stepping by
+     * a fixed amount per 60fps frame keeps its speed regardless of the actual frame rate.
+     */
+    protected static float toFrames(long elapsedNanos) {
+        return (float) elapsedNanos / REFERENCE_FRAME_NANOS;
+    }
+
     protected int dp2px(float dp) {
         return SizeTransformer.dip2px(mContext, dp);
     }
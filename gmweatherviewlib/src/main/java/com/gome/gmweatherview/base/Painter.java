@@ -13,5 +13,11 @@ public interface Painter {
 
     void setSize(int w, int h);
 
-    void draw(Canvas canvas);
+    /**
+     * Draws the next frame and advances the animation.
+     *
+     * @param canvas       canvas to draw on
+     * @param elapsedNanos time elapsed since the previous frame, in nanoseconds
+     */
+    void draw(Canvas canvas, long elapsedNanos);
 }
@@ -0,0 +1,111 @@
+package com.gome.gmweatherview.base;
+
+import android.graphics.Matrix;
+import android.graphics.RectF;
+
+/**
+ * Rejects geometry that falls outside the visible viewport once it has been projected into the
+ * painter's drawing coordinates, and counts how much was rejected during the current frame.
+ *
+ * @author Felix.Liang
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class ViewportCuller {
+
+    private final Matrix mInverse = new Matrix();
+    private final RectF mBounds = new RectF();
+    private int mCulledCount;
+    private int mTotalCount;
+    private int mLastCulledCount;
+    private int mLastTotalCount;
+
+    /**
+     * Maps the viewport back through the transform the canvas is under when the geometry is drawn.
+     *
+     * @param w            viewport width
+     * @param h            viewport height
+     * @param canvasMatrix transform applied to the canvas before drawing the culled geometry
+     * @param outset       distance the geometry may reach past its points, e.g. half the stroke
+     */
+    public void setViewport(int w, int h, Matrix canvasMatrix, float outset) {
+        mBounds.set(0, 0, w, h);
+        if (canvasMatrix != null && canvasMatrix.invert(mInverse)) {
+            mInverse.mapRect(mBounds);
+        }
+        mBounds.inset(-outset, -outset);
+    }
+
+    /**
+     * @return true if the rectangle lies completely outside the viewport
+     */
+    public boolean quickReject(float left, float top, float right, float bottom) {
+        mTotalCount++;
+        if (mBounds.intersects(left, top, right, bottom)) return false;
+        mCulledCount++;
+        return true;
+    }
+
+    /**
+     * @return true if the bounds of {@code count} points starting at {@code offset} lie
+     * completely outside the viewport
+     */
+    public boolean quickReject(float[] pts, int offset, int count) {
+        float left = pts[offset], right = left;
+        float top = pts[offset + 1], bottom = top;
+        for (int i = offset + 2, end = offset + count * 2; i < end; i += 2) {
+            final float x = pts[i];
+            final float y = pts[i + 1];
+            if (x < left) left = x;
+            else if (x > right) right = x;
+            if (y < top) top = y;
+            else if (y > bottom) bottom = y;
+        }
+        return quickReject(left, top, right, bottom);
+    }
+
+    /**
+     * Moves the visible points of the {@code count} floats starting at {@code offset} to the
+     * front of that range, keeping their order.
+     *
+     * @return number of floats kept
+     */
+    public int cullPoints(float[] pts, int offset, int count) {
+        int kept = offset;
+        for (int i = offset, end = offset + count; i < end; i += 2) {
+            final float x = pts[i];
+            final float y = pts[i + 1];
+            if (x >= mBounds.left && x <= mBounds.right && y >= mBounds.top && y <= mBounds.bottom) {
+                pts[kept++] = x;
+                pts[kept++] = y;
+            }
+        }
+        final int keptCount = kept - offset;
+        mTotalCount += count / 2;
+        mCulledCount += (count - keptCount) / 2;
+        return keptCount;
+    }
+
+    void beginFrame() {
+        mCulledCount = 0;
+        mTotalCount = 0;
+    }
+
+    void endFrame() {
+        mLastCulledCount = mCulledCount;
+        mLastTotalCount = mTotalCount;
+    }
+
+    /**
+     * @return number of segments or points rejected during the last frame
+     */
+    public int getCulledCount() {
+        return mLastCulledCount;
+    }
+
+    /**
+     * @return number of segments or points tested during the last frame
+     */
+    public int getTotalCount() {
+        return mLastTotalCount;
+    }
+}
@@ -0,0 +1,170 @@
+package com.gome.gmweatherview.entity;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import java.util.Random;
+
+/**
+ * Pool of rain ripples kept in primitive arrays and advanced by the frame clock of the thread
+ * that draws them. Every ripple spreads one to three rings from its center, and moves to a new
+ * random spot once its last ring has faded out. Not thread safe: all methods, including the
+ * setters, must be called on the thread that draws.
+ *
+ * @author Felix.Liang
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class RippleField {
+
+    private static final int MAX_RINGS = 3;
+    private static final int MAX_ALPHA = 180;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    /**
+     * Ring duration per pixel of the ripple's radius.
+     */
+    private static final int MILLIS_PER_RADIUS = 17;
+    /**
+     * Three float, one int and three long arrays per ripple.
+     */
+    private static final int BYTES_PER_RIPPLE = 3 * 4 + 4 + 3 * 8;
+    private final Random mRandom;
+    private final Paint mPaint;
+    private int mCount;
+    private float[] mX = new float[0];
+    private float[] mY = new float[0];
+    private float[] mMaxRadius = new float[0];
+    private int[] mRings = new int[0];
+    private long[] mStartTime = new long[0];
+    private long[] mDuration = new long[0];
+    private long[] mDelay = new long[0];
+    private long mTime;
+    private int mWidth;
+    private int mHeight;
+
+    public RippleField(Random random) {
+        mRandom = random;
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+        mPaint.setColor(Color.WHITE);
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeWidth(4);
+    }
+
+    /**
+     * Sets the area ripples are spread over and moves every ripple to a new spot inside it.
+     */
+    public void setBounds(int w, int h) {
+        mWidth = w;
+        mHeight = h;
+        restart();
+    }
+
+    public void setRippleCount(int count) {
+        if (count > mX.length) {
+            mX = grow(mX, count);
+            mY = grow(mY, count);
+            mMaxRadius = grow(mMaxRadius, count);
+            mRings = grow(mRings, count);
+            mStartTime = grow(mStartTime, count);
+            mDuration = grow(mDuration, count);
+            mDelay = grow(mDelay, count);
+        }
+        for (int i = mCount; i < count; i++) {
+            spawn(i);
+        }
+        mCount = count;
+    }
+
+    public int getRippleCount() {
+        return mCount;
+    }
+
+    /**
+     * @return bytes held by the arrays, which keep their size when fewer ripples are shown
+     */
+    public long getMemoryEstimate() {
+        return (long) mX.length * BYTES_PER_RIPPLE;
+    }
+
+    /**
+     * Smooths the ring strokes, which is worth turning off at low quality.
+     */
+    public void setAntiAlias(boolean antiAlias) {
+        mPaint.setAntiAlias(antiAlias);
+        mPaint.setDither(antiAlias);
+    }
+
+    /**
+     * Starts every ripple over from a new spot.
+     */
+    public void restart() {
+        for (int i = 0; i < mCount; i++) {
+            spawn(i);
+        }
+    }
+
+    public void advance(long elapsedNanos) {
+        mTime += elapsedNanos;
+        for (int i = 0; i < mCount; i++) {
+            if (mTime - mStartTime[i] >= mDelay[i] * mRings[i] + mDuration[i]) {
+                spawn(i);
+            }
+        }
+    }
+
+    /**
+     * @return number of circles drawn
+     */
+    public int draw(Canvas canvas) {
+        int drawn = 0;
+        for (int i = 0; i < mCount; i++) {
+            final long age = mTime - mStartTime[i];
+            for (int ring = 0; ring < mRings[i]; ring++) {
+                final long t = age - mDelay[i] * (ring + 1);
+                if (t < 0 || t >= mDuration[i]) continue;
+                final float fraction = (float) t / mDuration[i];
+                // same curve as a DecelerateInterpolator
+                final float value = 1 - (1 - fraction) * (1 - fraction);
+                mPaint.setAlpha((int) (MAX_ALPHA * (1 - value)));
+                canvas.drawCircle(mX[i], mY[i], value * mMaxRadius[i], mPaint);
+                drawn++;
+            }
+        }
+        return drawn;
+    }
+
+    private void spawn(int i) {
+        mX[i] = mWidth > 0 ? mRandom.nextInt(mWidth) : 0;
+        mY[i] = mHeight > 0 ? mRandom.nextInt(mHeight) : 0;
+        final float f = mRandom.nextFloat();
+        if (f < 0.6f) mRings[i] = 1;
+        else if (f < 0.95f) mRings[i] = 2;
+        else mRings[i] = MAX_RINGS;
+        final float f2 = mRandom.nextFloat();
+        if (f2 < 0.5f) mMaxRadius[i] = mRandom.nextInt(50) + 60;
+        else if (f2 < 0.8f) mMaxRadius[i] = mRandom.nextInt(150) + 60;
+        else mMaxRadius[i] = mRandom.nextInt(350) + 60;
+        final int duration = (int) (mMaxRadius[i] * MILLIS_PER_RADIUS);
+        mDuration[i] = duration * NANOS_PER_MILLI;
+        mDelay[i] = mRandom.nextInt(duration / 2) * NANOS_PER_MILLI;
+        mStartTime[i] = mTime;
+    }
+
+    private static float[] grow(float[] array, int size) {
+        final float[] result = new float[size];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static int[] grow(int[] array, int size) {
+        final int[] result = new int[size];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static long[] grow(long[] array, int size) {
+        final long[] result = new long[size];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+}
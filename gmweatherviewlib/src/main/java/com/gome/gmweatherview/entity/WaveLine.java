@@ -0,0 +1,82 @@
+package com.gome.gmweatherview.entity;
+
+import android.graphics.Matrix;
+import android.graphics.Path;
+
+import com.gome.gmweatherview.base.ViewportCuller;
+
+/**
+ * A horizontal wave made of quadratic segments, which is projected and culled segment by segment
+ * so that only the visible part of it reaches the canvas.
+ *
+ * @author Felix.Liang
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class WaveLine {
+
+    private float[] mPoints = new float[0];
+    private float[] mMapped = new float[0];
+    private int mSegments;
+    private final Path mVisible = new Path();
+
+    /**
+     * Lays out segments from {@code startX} until {@code endX} is reached, each one
+     * {@code 2 * waveWidth} long, with control points alternating between
+     * {@code amplitude} and {@code -amplitude}.
+     */
+    public void set(float startX, float endX, float waveWidth, float amplitude) {
+        int segments = 0;
+        for (float x = startX; x < endX; x += waveWidth * 2) segments++;
+        final int size = (segments * 2 + 1) * 2;
+        if (mPoints.length != size) {
+            mPoints = new float[size];
+            mMapped = new float[size];
+        }
+        mSegments = segments;
+        float x = startX;
+        float y = amplitude;
+        mPoints[0] = x;
+        mPoints[1] = 0;
+        for (int i = 0; i < segments; i++) {
+            final int index = (i * 2 + 1) * 2;
+            mPoints[index] = x + waveWidth;
+            mPoints[index + 1] = y;
+            mPoints[index + 2] = x + waveWidth * 2;
+            mPoints[index + 3] = 0;
+            x += waveWidth * 2;
+            y = -y;
+        }
+    }
+
+    /**
+     * @return number of points laid out by the last {@link #set(float, float, float, float)}
+     */
+    public int getPointCount() {
+        return mPoints.length / 2;
+    }
+
+    /**
+     * Writes the segments that remain visible under {@code matrix} into {@code dst}.
+     *
+     * @return false if the whole wave was culled
+     */
+    public boolean transform(Matrix matrix, ViewportCuller culler, Path dst) {
+        matrix.mapPoints(mMapped, mPoints);
+        mVisible.rewind();
+        boolean connected = false;
+        boolean visible = false;
+        for (int i = 0; i < mSegments; i++) {
+            final int index = i * 4;
+            if (culler.quickReject(mMapped, index, 3)) {
+                connected = false;
+                continue;
+            }
+            if (!connected) mVisible.moveTo(mPoints[index], mPoints[index + 1]);
+            mVisible.quadTo(mPoints[index + 2], mPoints[index + 3], mPoints[index + 4], mPoints[index + 5]);
+            connected = true;
+            visible = true;
+        }
+        if (visible) mVisible.transform(matrix, dst);
+        return visible;
+    }
+}
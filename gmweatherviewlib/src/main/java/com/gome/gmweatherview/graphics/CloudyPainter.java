@@ -1,7 +1,6 @@
 package com.gome.gmweatherview.graphics;
 
 import android.content.Context;
-import android.graphics.Camera;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.LinearGradient;
@@ -11,6 +10,8 @@ import android.graphics.Path;
 import android.graphics.Shader;
 
 import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.entity.WaveLine;
+import com.gome.gmweatherview.util.Projection3D;
 
 /**
  * @author Felix.Liang
@@ -21,17 +22,18 @@ public class CloudyPainter extends AbsPainter {
     private static final float DELTA_DEGREE = 10;
     private static final int MIN_ALPHA = 80;
     private static final int MAX_ALPHA = 200;
+    private static final int[] LINES_PER_QUALITY = {6, 10, NUMBER_OF_LINE};
     private Paint mLinePaint;
-    private Paint mBgPaint;
-    private Path mBasePath;
+    private WaveLine mWave = new WaveLine();
     private Path mTemp = new Path();
     private int mWaveWidth;
     private int mAmplitude;
-    private Camera mCamera = new Camera();
+    private Projection3D mProjection = new Projection3D();
+    private float[] mValues = new float[9];
     private Matrix mMatrix = new Matrix();
     private float mXOffset;
-    private LinearGradient mShader;
     private final int mCanvasXOffset = dp2px(130);
+    private int mNumberOfLines = NUMBER_OF_LINE;
 
     public CloudyPainter(Context context) {
         super(context);
@@ -43,8 +45,6 @@ public class CloudyPainter extends AbsPainter {
         mLinePaint.setStyle(Paint.Style.STROKE);
         mLinePaint.setColor(Color.WHITE);
         mLinePaint.setStrokeWidth(dp2px(1f));
-        mBgPaint = new Paint(Paint.DITHER_FLAG);
-        mBgPaint.setStyle(Paint.Style.FILL_AND_STROKE);
     }
 
     @Override
@@ -52,26 +52,38 @@ public class CloudyPainter extends AbsPainter {
         super.onSizeChanged(w, h);
         mWaveWidth = 900;
         mAmplitude = (int) (mWaveWidth * 0.5f);
-        if (mShader == null) {
-            mShader = new LinearGradient(0, 0, 0, getHeight(), 0xFF0B8AC6, 0xFFFFFFFF, Shader.TileMode.CLAMP);
-            mBgPaint.setShader(mShader);
-        }
         initPath();
+        final Matrix canvasMatrix = new Matrix();
+        canvasMatrix.setRotate(20);
+        canvasMatrix.preTranslate(w + mCanvasXOffset, h / 3);
+        canvasMatrix.preScale(1.1f, 1.1f);
+        getCuller().setViewport(w, h, canvasMatrix, mLinePaint.getStrokeWidth());
+    }
+
+    @Override
+    protected Shader onCreateBackgroundShader(int w, int h) {
+        return new LinearGradient(0, 0, 0, h, 0xFF0B8AC6, 0xFFFFFFFF, Shader.TileMode.CLAMP);
+    }
+
+    @Override
+    protected long onEstimateMemory() {
+        // the wave's own and projected points, its visible path and the transformed copy
+        final int points = mWave.getPointCount();
+        return 2 * estimateFloats(points * 2) + 2 * estimatePath(points);
     }
 
     private void initPath() {
-        if (mBasePath == null) mBasePath = new Path();
-        else mBasePath.reset();
-        int x = -5 * getWidth();
-        mBasePath.moveTo(-5 * getWidth(), 0);
-        boolean mOdd = false;
-        while (x < getWidth()) {
-            mBasePath.rQuadTo(mWaveWidth,
-                    mOdd ? -mAmplitude : mAmplitude
-                    , 2 * mWaveWidth, 0);
-            x += mWaveWidth * 2;
-            mOdd = !mOdd;
-        }
+        mWave.set(-5 * getWidth(), getWidth(), mWaveWidth, mAmplitude);
+    }
+
+    /**
+     * Fewer lines keep spanning the same angle and depth as the full set.
+     */
+    @Override
+    protected void onQualityChanged(int quality) {
+        mNumberOfLines = LINES_PER_QUALITY[quality];
+        mLinePaint.setAntiAlias(isSmooth());
+        mLinePaint.setDither(isSmooth());
     }
 
     @Override
@@ -85,27 +97,34 @@ public class CloudyPainter extends AbsPainter {
     }
 
     @Override
-    public void draw(Canvas canvas) {
-        canvas.drawPaint(mBgPaint);
+    protected void onDraw(Canvas canvas, long elapsedNanos) {
         canvas.rotate(20);
         canvas.translate(getWidth() + mCanvasXOffset, getHeight() / 3);
         canvas.scale(1.1f, 1.1f);
+        final int lines = mNumberOfLines;
+        final float step = (NUMBER_OF_LINE - 1f) / (lines - 1);
         int alpha = MIN_ALPHA;
-        final int dAlpha = (MAX_ALPHA - MIN_ALPHA) / (NUMBER_OF_LINE - 1);
-        for (int i = 0; i < NUMBER_OF_LINE; i++) {
-            mCamera.save();
-            mCamera.translate(-500 + mXOffset, 0, i * 20);
-            mCamera.rotateX(i * DELTA_DEGREE);
-            mMatrix.reset();
-            mCamera.getMatrix(mMatrix);
-            mCamera.restore();
-            mTemp.reset();
-            mBasePath.transform(mMatrix, mTemp);
-            mLinePaint.setAlpha(alpha);
-            canvas.drawPath(mTemp, mLinePaint);
+        final int dAlpha = (MAX_ALPHA - MIN_ALPHA) / (lines - 1);
+        for (int k = 0; k < lines; k++) {
+            final float i = k * step;
+            mProjection.reset();
+            mProjection.translate(-500 + mXOffset, 0, i * 20);
+            mProjection.rotateX(i * DELTA_DEGREE);
+            mProjection.getValues(mValues);
+            mMatrix.setValues(mValues);
+            if (mWave.transform(mMatrix, getCuller(), mTemp)) {
+                mLinePaint.setAlpha(alpha);
+                canvas.drawPath(mTemp, mLinePaint);
+                countDrawCalls(1);
+            }
             alpha += dAlpha;
         }
-        mXOffset += 3;
+        mXOffset += 3 * toFrames(elapsedNanos);
         mXOffset %= (mWaveWidth * 4);
     }
+
+    @Override
+    public long getLoopDurationNanos() {
+        return (long) (mWaveWidth * 4 / 3f * REFERENCE_FRAME_NANOS);
+    }
 }
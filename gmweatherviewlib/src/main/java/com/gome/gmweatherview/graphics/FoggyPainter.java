@@ -11,6 +11,8 @@ import android.graphics.PathDashPathEffect;
 import android.graphics.Shader;
 
 import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.util.AlphaRamp;
+import com.gome.gmweatherview.util.Geometry;
 
 /**
  * @author Felix.Liang
@@ -20,16 +22,23 @@ public class FoggyPainter extends AbsPainter {
     private static final int NUMBER_OF_LINES = 5;
     private static final int NUMBER_OF_SIDES = 6;
     private static final float DELTA_SCALE = 0.13f;
-    private Shader mShader;
-    private Paint mBgPaint;
+    private static final int DEFAULT_SCALE_RESOLUTION = 200;
+    private static final int MAX_CACHED_RINGS = 256;
+    /**
+     * Rough size of a cached hexagon path and its dash effect.
+     */
+    private static final int RING_ESTIMATE_BYTES = 1024;
     private Paint[] mFogPaints = new Paint[NUMBER_OF_LINES];
     private float[] mScales = new float[NUMBER_OF_LINES];
     private float mMinRadius;
     private Path mBasePath;
     private Matrix mMatrix = new Matrix();
-    private Path mLineDst = new Path();
     private float mBaseSpace = dp2px(5);
     private Path mShapePath;
+    private volatile int mRequestedScaleResolution = DEFAULT_SCALE_RESOLUTION;
+    private int mScaleResolution = DEFAULT_SCALE_RESOLUTION;
+    private Path[] mRingPaths;
+    private PathDashPathEffect[] mRingEffects;
     private final float mMaxScale = 1 + NUMBER_OF_LINES * DELTA_SCALE;
 
     public FoggyPainter(Context context) {
@@ -49,8 +58,6 @@ public class FoggyPainter extends AbsPainter {
     }
 
     private void initPaints() {
-        mBgPaint = new Paint(Paint.DITHER_FLAG);
-        mBgPaint.setStyle(Paint.Style.FILL_AND_STROKE);
         for (int i = 0; i < mFogPaints.length; i++) {
             mFogPaints[i] = new Paint(Paint.ANTI_ALIAS_FLAG);
             mFogPaints[i].setStyle(Paint.Style.STROKE);
@@ -60,38 +67,83 @@ public class FoggyPainter extends AbsPainter {
         mShapePath.addCircle(0, 0, 4, Path.Direction.CCW);
     }
 
+    /**
+     * Sets how many cached ring sizes are kept per unit of scale. Rings are drawn from the
+     * closest cached size, so a higher resolution trades memory for smoother growth. The
+     * resolution is capped so that at most {@value #MAX_CACHED_RINGS} rings are cached. The
+     * rings are rebuilt on the drawing thread before the next frame.
+     */
+    public void setScaleResolution(int resolution) {
+        final int max = (int) ((MAX_CACHED_RINGS - 1) / (mMaxScale - 1));
+        mRequestedScaleResolution = Math.max(1, Math.min(resolution, max));
+        requestApplyChanges();
+    }
+
+    public int getScaleResolution() {
+        return mRequestedScaleResolution;
+    }
+
+    @Override
+    protected void onApplyChanges() {
+        final int resolution = mRequestedScaleResolution;
+        if (mScaleResolution != resolution) {
+            mScaleResolution = resolution;
+            if (mRingPaths != null) buildRings();
+        }
+    }
+
     @Override
     protected void onSizeChanged(int w, int h) {
         super.onSizeChanged(w, h);
-        if (mShader == null) {
-            mShader = new LinearGradient(0, 0, 0, getHeight(), 0xFFABB3B7, 0xFFD0D9DA, Shader.TileMode.CLAMP);
-            mBgPaint.setShader(mShader);
-        }
         mMinRadius = dp2px(70);
         createPath();
+        mScaleResolution = mRequestedScaleResolution;
+        buildRings();
+    }
+
+    @Override
+    protected Shader onCreateBackgroundShader(int w, int h) {
+        return new LinearGradient(0, 0, 0, h, 0xFFABB3B7, 0xFFD0D9DA, Shader.TileMode.CLAMP);
+    }
+
+    @Override
+    protected void onQualityChanged(int quality) {
+        for (Paint paint : mFogPaints) paint.setAntiAlias(isSmooth());
+    }
+
+    @Override
+    protected void onTrimMemory() {
+        mRingPaths = null;
+        mRingEffects = null;
+    }
+
+    @Override
+    protected long onEstimateMemory() {
+        final Path[] paths = mRingPaths;
+        return paths != null ? (long) paths.length * RING_ESTIMATE_BYTES : 0;
     }
 
     private void createPath() {
-        final float degree = 360f / NUMBER_OF_SIDES;
-        float radius = mMinRadius;
         if (mBasePath == null) {
+            final float[] vertices = new float[NUMBER_OF_SIDES * 2];
+            Geometry.polygon(vertices, NUMBER_OF_SIDES, mMinRadius);
             mBasePath = new Path();
-            for (int j = 0; j < NUMBER_OF_SIDES; j++) {
-                float currX = (float) (radius * Math.sin(Math.toRadians(j * degree)));
-                float currY = (float) (-radius * Math.cos(Math.toRadians(j * degree)));
-                if (j == 0) mBasePath.moveTo(currX, currY);
-                else mBasePath.lineTo(currX, currY);
+            mBasePath.moveTo(vertices[0], vertices[1]);
+            for (int j = 1; j < NUMBER_OF_SIDES; j++) {
+                mBasePath.lineTo(vertices[j * 2], vertices[j * 2 + 1]);
             }
             mBasePath.close();
         }
     }
 
     @Override
-    public void draw(Canvas canvas) {
-        canvas.drawPaint(mBgPaint);
+    protected void onDraw(Canvas canvas, long elapsedNanos) {
         canvas.translate(getWidth() * 0.55f, getHeight() / 3);
         drawMainLines(canvas);
-        drawSubLines(canvas);
+        // the smaller copy of the rings is left out below the high tier
+        if (getQuality() == QUALITY_HIGH) drawSubLines(canvas);
+        // the rings used to advance once for the main and once for the sub lines
+        updateScales(2 * toFrames(elapsedNanos));
     }
 
     private void drawSubLines(Canvas canvas) {
@@ -101,17 +153,42 @@ public class FoggyPainter extends AbsPainter {
     }
 
     private void drawMainLines(Canvas canvas) {
+        final Path[] paths = mRingPaths;
+        final PathDashPathEffect[] effects = mRingEffects;
+        if (paths == null) return;
         for (int i = 0; i < mScales.length; i++) {
-            float scale = mScales[i];
-            canvas.save();
-            mMatrix.reset();
+            final int bucket = Math.max(0, Math.min(Math.round((mScales[i] - 1) * mScaleResolution),
+                    paths.length - 1));
+            mFogPaints[i].setPathEffect(effects[bucket]);
+            canvas.drawPath(paths[bucket], mFogPaints[i]);
+        }
+        countDrawCalls(mScales.length);
+    }
+
+    /**
+     * Builds the base hexagon scaled to every bucket's scale, with the dotted dash effect whose
+     * spacing follows that scale, so drawing only looks them up.
+     */
+    private void buildRings() {
+        final int size = Math.round((mMaxScale - 1) * mScaleResolution) + 1;
+        final Path[] paths = new Path[size];
+        final PathDashPathEffect[] effects = new PathDashPathEffect[size];
+        for (int bucket = 0; bucket < size; bucket++) {
+            final float scale = 1 + (float) bucket / mScaleResolution;
             mMatrix.setScale(scale, scale);
-            mBasePath.transform(mMatrix, mLineDst);
-            updatePathEffect(i, scale);
-            canvas.drawPath(mLineDst, mFogPaints[i]);
-            canvas.restore();
-            float delta = calculateDelta(scale);
-            scale += delta;
+            paths[bucket] = new Path();
+            mBasePath.transform(mMatrix, paths[bucket]);
+            effects[bucket] = new PathDashPathEffect(mShapePath, mBaseSpace * scale, 0,
+                    PathDashPathEffect.Style.TRANSLATE);
+        }
+        mRingPaths = paths;
+        mRingEffects = effects;
+    }
+
+    private void updateScales(float frames) {
+        for (int i = 0; i < mScales.length; i++) {
+            float scale = mScales[i];
+            scale += calculateDelta(scale) * frames;
             if (scale > mMaxScale) {
                 scale = 1 + scale % mMaxScale;
             }
@@ -124,23 +201,12 @@ public class FoggyPainter extends AbsPainter {
         return (float) (scale * 0.0002 + 0.00025);
     }
 
-    private void updatePathEffect(int index, float scale) {
-        float space = mBaseSpace * scale;
-        PathDashPathEffect effect = new PathDashPathEffect(mShapePath, space, 0, PathDashPathEffect.Style.TRANSLATE);
-        mFogPaints[index].setPathEffect(effect);
-    }
-
     private void setScale(int index, float scale) {
         mScales[index] = scale;
         mFogPaints[index].setAlpha(calculateAlpha(scale));
     }
 
     private int calculateAlpha(float scale) {
-        scale -= 1;
-        if (scale < (mMaxScale - 1) / 2) {
-            return (int) ((2 * 255) / (mMaxScale - 1) * scale);
-        } else {
-            return (int) ((2 * 255) / (1 - mMaxScale) * (scale - mMaxScale + 1));
-        }
+        return AlphaRamp.tent((scale - 1) / (mMaxScale - 1), 0.5f, 255);
     }
 }
@@ -1,7 +1,6 @@
 package com.gome.gmweatherview.graphics;
 
 import android.content.Context;
-import android.graphics.Camera;
 import android.graphics.Canvas;
 import android.graphics.LinearGradient;
 import android.graphics.Matrix;
@@ -11,6 +10,8 @@ import android.graphics.Shader;
 import android.graphics.SweepGradient;
 
 import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.entity.WaveLine;
+import com.gome.gmweatherview.util.Projection3D;
 
 /**
  * @author Felix.Liang
@@ -19,20 +20,21 @@ public class OvercastPainter extends AbsPainter {
 
     private static final int NUMBER_OF_LINE = 20;
     private static final float DELTA_DEGREE = 8;
+    private static final int[] LINES_PER_QUALITY = {8, 12, NUMBER_OF_LINE};
     private Paint mLinePaint;
-    private Paint mBgPaint;
-    private Path mBasePath;
+    private WaveLine mWave = new WaveLine();
     private Path mTemp = new Path();
     private int mWaveWidth;
     private int mAmplitude;
-    private Camera mCamera = new Camera();
+    private Projection3D mProjection = new Projection3D();
+    private float[] mValues = new float[9];
     private Matrix mMatrix = new Matrix();
     private float mXOffset;
-    private LinearGradient mBgShader;
     private SweepGradient mLightShader;
     private int[] mColors = {0xFF43484D, 0xFFFFFFFF, 0xFF43484D};
     private float[] mPositions = {0.35f, 0.5f, 0.65f};
     private int mCanvasXOffset = dp2px(130);
+    private int mNumberOfLines = NUMBER_OF_LINE;
 
     public OvercastPainter(Context context) {
         super(context);
@@ -43,8 +45,6 @@ public class OvercastPainter extends AbsPainter {
         mLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mLinePaint.setStyle(Paint.Style.STROKE);
         mLinePaint.setStrokeWidth(dp2px(1));
-        mBgPaint = new Paint(Paint.DITHER_FLAG);
-        mBgPaint.setStyle(Paint.Style.FILL_AND_STROKE);
     }
 
     @Override
@@ -52,10 +52,6 @@ public class OvercastPainter extends AbsPainter {
         super.onSizeChanged(w, h);
         mWaveWidth = dp2px(300);
         mAmplitude = (int) (mWaveWidth * 0.7f);
-        if (mBgShader == null) {
-            mBgShader = new LinearGradient(0, 0, 0, getHeight(), 0xFF495052, 0xFFA2B2B4, Shader.TileMode.CLAMP);
-            mBgPaint.setShader(mBgShader);
-        }
         if (mLightShader == null) {
             Matrix matrix = new Matrix();
             matrix.preRotate(-90);
@@ -64,20 +60,26 @@ public class OvercastPainter extends AbsPainter {
             mLinePaint.setShader(mLightShader);
         }
         initPath();
+        final Matrix canvasMatrix = new Matrix();
+        canvasMatrix.setTranslate(w / 2 - mCanvasXOffset, h / 3);
+        getCuller().setViewport(w, h, canvasMatrix, mLinePaint.getStrokeWidth());
+    }
+
+    @Override
+    protected Shader onCreateBackgroundShader(int w, int h) {
+        // the gradient used to be painted after translating the canvas down by a third
+        return new LinearGradient(0, h / 3, 0, h / 3 + h, 0xFF495052, 0xFFA2B2B4, Shader.TileMode.CLAMP);
+    }
+
+    @Override
+    protected long onEstimateMemory() {
+        // the wave's own and projected points, its visible path and the transformed copy
+        final int points = mWave.getPointCount();
+        return 2 * estimateFloats(points * 2) + 2 * estimatePath(points);
     }
 
     private void initPath() {
-        if (mBasePath == null) mBasePath = new Path();
-        else mBasePath.reset();
-        int x = (int) (-5f * getWidth());
-        mBasePath.moveTo((float) (-5 * getWidth()), 0);
-        boolean mOdd = true;
-        while (x < getWidth()) {
-            mBasePath.rQuadTo(mWaveWidth, mOdd ? -mAmplitude : mAmplitude,
-                    2 * mWaveWidth, 0);
-            x += mWaveWidth * 2;
-            mOdd = !mOdd;
-        }
+        mWave.set(-5 * getWidth(), getWidth(), mWaveWidth, -mAmplitude);
     }
 
     @Override
@@ -90,31 +92,45 @@ public class OvercastPainter extends AbsPainter {
         mXOffset = 0;
     }
 
+    /**
+     * Fewer lines keep spanning the same angle and depth as the full set.
+     */
+    @Override
+    protected void onQualityChanged(int quality) {
+        mNumberOfLines = LINES_PER_QUALITY[quality];
+        mLinePaint.setAntiAlias(isSmooth());
+    }
+
     @Override
-    public void draw(Canvas canvas) {
+    protected void onDraw(Canvas canvas, long elapsedNanos) {
         canvas.translate(getWidth() / 2 - mCanvasXOffset, getHeight() / 3);
-        canvas.drawPaint(mBgPaint);
-        final int dAlpha = 255 / (NUMBER_OF_LINE - 1);
+        final int lines = mNumberOfLines;
+        final float step = (NUMBER_OF_LINE - 1f) / (lines - 1);
+        final int dAlpha = 255 / (lines - 1);
         int alpha = 255;
-        mCamera.save();
         float off = 0, off2 = 0;
-        for (int i = 0; i < NUMBER_OF_LINE; i++) {
-            mCamera.save();
-            mCamera.translate(mXOffset + off2, off2, off);
-            mCamera.rotateX(i * DELTA_DEGREE);
-            mMatrix.reset();
-            mCamera.getMatrix(mMatrix);
-            mCamera.restore();
-            mTemp.reset();
-            mBasePath.transform(mMatrix, mTemp);
-            mLinePaint.setAlpha(alpha);
-            canvas.drawPath(mTemp, mLinePaint);
+        for (int k = 0; k < lines; k++) {
+            final float i = k * step;
+            mProjection.reset();
+            mProjection.translate(mXOffset + off2, off2, off);
+            mProjection.rotateX(i * DELTA_DEGREE);
+            mProjection.getValues(mValues);
+            mMatrix.setValues(mValues);
+            if (mWave.transform(mMatrix, getCuller(), mTemp)) {
+                mLinePaint.setAlpha(alpha);
+                canvas.drawPath(mTemp, mLinePaint);
+                countDrawCalls(1);
+            }
             alpha -= dAlpha;
-            off2 += 5;
-            off += 25;
+            off2 += 5 * step;
+            off += 25 * step;
         }
-        mCamera.restore();
-        mXOffset += 3;
+        mXOffset += 3 * toFrames(elapsedNanos);
         mXOffset %= (mWaveWidth * 4);
     }
+
+    @Override
+    public long getLoopDurationNanos() {
+        return (long) (mWaveWidth * 4 / 3f * REFERENCE_FRAME_NANOS);
+    }
 }
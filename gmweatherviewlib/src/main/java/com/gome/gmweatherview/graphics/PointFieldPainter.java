@@ -0,0 +1,208 @@
+package com.gome.gmweatherview.graphics;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Shader;
+
+import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.util.Geometry;
+import com.gome.gmweatherview.util.Projection3D;
+
+/**
+ * Draws a field of dotted sine waves, each one rotated a little further around the x axis than
+ * the previous one. All lines are projected into one point buffer and drawn with a single call.
+ *
+ * @author Felix.Liang
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public abstract class PointFieldPainter extends AbsPainter {
+
+    private static final int DEFAULT_NUMBER_OF_LINES = 18;
+    private static final int DEFAULT_POINTS_PER_LINE = 225;
+    private static final float DELTA_DEGREE = 10;
+    private static final float DELTA_OFFSET = 20;
+    private static final float[] LINE_FRACTION_PER_QUALITY = {0.5f, 0.75f, 1f};
+    private static final int[] POINT_STRIDE_PER_QUALITY = {2, 1, 1};
+    private final int mBgStartColor;
+    private final int mBgEndColor;
+    private Paint mLinePaint;
+    private Projection3D mProjection = new Projection3D();
+    private float[] mValues = new float[9];
+    private float mXOffset;
+    private int mNumberOfLines = DEFAULT_NUMBER_OF_LINES;
+    private int mPointsPerLine = DEFAULT_POINTS_PER_LINE;
+    private int mWaveWidth = dp2px(350);
+    private float mAmplitudeRatio = 0.2f;
+    private int mDeltaX = dp2px(3f);
+    private float mDegree;
+    private float[] mSrcPoints;
+    private float[] mDstPoints;
+    private int mVisibleLines = DEFAULT_NUMBER_OF_LINES;
+    private int mPointStride = 1;
+    private volatile Field mRequestedField;
+    private Field mField;
+
+    protected PointFieldPainter(Context context, int lineColor, int bgStartColor, int bgEndColor) {
+        super(context);
+        mBgStartColor = bgStartColor;
+        mBgEndColor = bgEndColor;
+        initPaints(lineColor);
+        mField = mRequestedField = new Field(mNumberOfLines, mWaveWidth, mAmplitudeRatio, mPointsPerLine);
+        initPoints();
+    }
+
+    private void initPaints(int lineColor) {
+        mLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+        mLinePaint.setColor(lineColor);
+        mLinePaint.setStrokeWidth(dp2px(1.5f));
+    }
+
+    public void setLineColor(int color) {
+        mLinePaint.setColor(color);
+    }
+
+    /**
+     * Takes effect on the drawing thread before the next frame.
+     */
+    public void setNumberOfLines(int numberOfLines) {
+        final Field field = mRequestedField;
+        mRequestedField = new Field(numberOfLines, field.waveWidth, field.amplitudeRatio, field.pointsPerLine);
+        requestApplyChanges();
+    }
+
+    /**
+     * Takes effect on the drawing thread before the next frame.
+     *
+     * @param waveWidth      half the wave period, in pixels
+     * @param amplitudeRatio wave amplitude relative to {@code waveWidth}
+     * @param pointsPerLine  number of points sampled along each line
+     */
+    public void setWave(int waveWidth, float amplitudeRatio, int pointsPerLine) {
+        final Field field = mRequestedField;
+        mRequestedField = new Field(field.numberOfLines, waveWidth, amplitudeRatio, pointsPerLine);
+        requestApplyChanges();
+    }
+
+    /**
+     * Rebuilds the point buffers for the last requested line count and wave, which are published
+     * together so a frame never mixes old and new values.
+     */
+    @Override
+    protected void onApplyChanges() {
+        final Field field = mRequestedField;
+        if (field == mField) return;
+        mField = field;
+        mNumberOfLines = field.numberOfLines;
+        mWaveWidth = field.waveWidth;
+        mAmplitudeRatio = field.amplitudeRatio;
+        mPointsPerLine = field.pointsPerLine;
+        initPoints();
+    }
+
+    /**
+     * Lower tiers draw fewer lines over the same angle and sample each line more sparsely over
+     * the same length.
+     */
+    @Override
+    protected void onQualityChanged(int quality) {
+        mPointStride = POINT_STRIDE_PER_QUALITY[quality];
+        mLinePaint.setAntiAlias(isSmooth());
+        mLinePaint.setDither(isSmooth());
+        initPoints();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h) {
+        super.onSizeChanged(w, h);
+        final Matrix canvasMatrix = new Matrix();
+        canvasMatrix.setRotate(-20);
+        canvasMatrix.preTranslate(0, h / 2);
+        getCuller().setViewport(w, h, canvasMatrix, mLinePaint.getStrokeWidth());
+    }
+
+    @Override
+    protected Shader onCreateBackgroundShader(int w, int h) {
+        return new LinearGradient(0, 0, 0, h, mBgStartColor, mBgEndColor, Shader.TileMode.CLAMP);
+    }
+
+    @Override
+    protected long onEstimateMemory() {
+        final float[] src = mSrcPoints;
+        final float[] dst = mDstPoints;
+        return (src != null ? estimateFloats(src.length) : 0) + (dst != null ? estimateFloats(dst.length) : 0);
+    }
+
+    private void initPoints() {
+        mVisibleLines = Math.max(Math.min(2, mNumberOfLines),
+                Math.round(mNumberOfLines * LINE_FRACTION_PER_QUALITY[getQuality()]));
+        final int length = mPointsPerLine / mPointStride * 2;
+        if (mSrcPoints == null || mSrcPoints.length != length) mSrcPoints = new float[length];
+        if (mDstPoints == null || mDstPoints.length != length * mVisibleLines)
+            mDstPoints = new float[length * mVisibleLines];
+        Geometry.sineWave(mSrcPoints, mDeltaX * mPointStride, mWaveWidth, (int) (mWaveWidth * mAmplitudeRatio));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas, long elapsedNanos) {
+        canvas.rotate(-20);
+        canvas.translate(0, getHeight() / 2);
+        final int length = mSrcPoints.length;
+        final int lines = mVisibleLines;
+        final float step = lines > 1 ? (mNumberOfLines - 1f) / (lines - 1) : 1;
+        int count = 0;
+        for (int k = 0; k < lines; k++) {
+            final float i = k * step;
+            mProjection.reset();
+            mProjection.translate(200 + mXOffset + i * DELTA_OFFSET, 0, 0);
+            mProjection.rotateX(i * DELTA_DEGREE + mDegree);
+            mProjection.getValues(mValues);
+            // project straight behind the points kept so far, then drop the invisible ones
+            Projection3D.mapPoints(mValues, mDstPoints, count, mSrcPoints, 0, length / 2);
+            count += getCuller().cullPoints(mDstPoints, count, length);
+        }
+        if (count > 0) {
+            canvas.drawPoints(mDstPoints, 0, count, mLinePaint);
+            countDrawCalls(1);
+        }
+        final float frames = toFrames(elapsedNanos);
+        mDegree -= 0.5f * frames;
+        mDegree %= 360;
+        mXOffset -= frames;
+        mXOffset %= (mWaveWidth * 2);
+    }
+
+    private static final class Field {
+
+        final int numberOfLines;
+        final int waveWidth;
+        final float amplitudeRatio;
+        final int pointsPerLine;
+
+        Field(int numberOfLines, int waveWidth, float amplitudeRatio, int pointsPerLine) {
+            this.numberOfLines = numberOfLines;
+            this.waveWidth = waveWidth;
+            this.amplitudeRatio = amplitudeRatio;
+            this.pointsPerLine = pointsPerLine;
+        }
+    }
+
+    /**
+     * The rotation repeats every 720 frames and the drift every {@code 2 * waveWidth} frames,
+     * so the loop is {@code lcm(720, 2 * waveWidth)} reference frames long. The wave width is
+     * in pixels, so the length grows with the screen density.
+     */
+    @Override
+    public long getLoopDurationNanos() {
+        final long drift = 2L * mWaveWidth;
+        long a = 720, b = drift;
+        while (b != 0) {
+            final long t = a % b;
+            a = b;
+            b = t;
+        }
+        return 720 / a * drift * REFERENCE_FRAME_NANOS;
+    }
+}
@@ -3,13 +3,11 @@ package com.gome.gmweatherview.graphics;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.LinearGradient;
-import android.graphics.Paint;
 import android.graphics.Shader;
 
 import com.gome.gmweatherview.base.AbsPainter;
-import com.gome.gmweatherview.entity.Ripple;
+import com.gome.gmweatherview.entity.RippleField;
 
-import java.util.ArrayList;
 import java.util.Random;
 
 /**
@@ -17,72 +15,80 @@ import java.util.Random;
  */
 public class RainyPainter extends AbsPainter {
 
-    private Shader mShader;
-    private Paint mBgPaint;
-    private ArrayList<Ripple> mRipples = new ArrayList<>();
-    private Random mRandom = new Random();
+    private static final int DEFAULT_NUMBER_OF_RIPPLES = 15;
+    private static final float[] RIPPLE_FRACTION_PER_QUALITY = {0.4f, 0.7f, 1f};
+    private final Random mRandom = new Random();
+    private RippleField mRipples = new RippleField(mRandom);
+    private volatile int mRequestedNumberOfRipples = DEFAULT_NUMBER_OF_RIPPLES;
+    private int mNumberOfRipples = DEFAULT_NUMBER_OF_RIPPLES;
 
     public RainyPainter(Context context) {
         super(context);
-        init();
     }
 
-    private void init() {
-        initPaints();
+    /**
+     * Takes effect on the drawing thread before the next frame, since the ripple arrays may
+     * have to grow.
+     */
+    public void setNumberOfRipples(int numberOfRipples) {
+        mRequestedNumberOfRipples = numberOfRipples;
+        requestApplyChanges();
     }
 
-    private void initPaints() {
-        mBgPaint = new Paint(Paint.DITHER_FLAG);
-        mBgPaint.setStyle(Paint.Style.FILL_AND_STROKE);
+    @Override
+    protected void onApplyChanges() {
+        final int numberOfRipples = mRequestedNumberOfRipples;
+        if (mNumberOfRipples != numberOfRipples) {
+            mNumberOfRipples = numberOfRipples;
+            if (getWidth() != 0 || getHeight() != 0) mRipples.setRippleCount(getRippleCount());
+        }
+    }
+
+    private int getRippleCount() {
+        return Math.round(mNumberOfRipples * RIPPLE_FRACTION_PER_QUALITY[getQuality()]);
+    }
+
+    @Override
+    protected void onQualityChanged(int quality) {
+        mRipples.setAntiAlias(isSmooth());
+        if (getWidth() != 0 || getHeight() != 0) mRipples.setRippleCount(getRippleCount());
+    }
+
+    /**
+     * Reseeds the ripple placement so the same sequence of frames is drawn every time, e.g. for
+     * benchmarks.
+     */
+    public void setSeed(long seed) {
+        mRandom.setSeed(seed);
+        mRipples.restart();
     }
 
     @Override
     protected void onSizeChanged(int w, int h) {
         super.onSizeChanged(w, h);
-        if (mShader == null) {
-            mShader = new LinearGradient(0, 0, 0, getHeight(), 0xFF495976, 0xFF1D253C, Shader.TileMode.CLAMP);
-            mBgPaint.setShader(mShader);
-        }
-        if (mRipples.size() == 0) initRipples();
+        mRipples.setBounds(w, h);
+        mRipples.setRippleCount(getRippleCount());
     }
 
-    private void initRipples() {
-        for (int i = 0; i < 15; i++) {
-            mRipples.add(new Ripple(mRandom.nextInt(getWidth()), mRandom.nextInt(getHeight())));
-        }
-        for (Ripple ripple : mRipples) {
-            ripple.setOnRippleListener(new Ripple.OnRippleChangeListener() {
-                @Override
-                public void onRippleEnd(Ripple ripple) {
-                    ripple.setLocation(mRandom.nextInt(getWidth()), mRandom.nextInt(getHeight()));
-//                    ripple.rippleOut();
-                }
-            });
-            ripple.rippleOut();
-        }
+    @Override
+    protected Shader onCreateBackgroundShader(int w, int h) {
+        return new LinearGradient(0, 0, 0, h, 0xFF495976, 0xFF1D253C, Shader.TileMode.CLAMP);
     }
 
     @Override
-    public void draw(Canvas canvas) {
-        canvas.drawPaint(mBgPaint);
-        for (Ripple ripple : mRipples) {
-            ripple.draw(canvas);
-        }
+    protected long onEstimateMemory() {
+        return mRipples.getMemoryEstimate();
     }
 
     @Override
-    public void onDetachedFromView() {
-        super.onDetachedFromView();
-        for (Ripple ripple : mRipples) {
-            ripple.stop();
-        }
+    protected void onDraw(Canvas canvas, long elapsedNanos) {
+        countDrawCalls(mRipples.draw(canvas));
+        mRipples.advance(elapsedNanos);
     }
 
     @Override
-    public void onAttachedToView() {
-        super.onAttachedToView();
-        for (Ripple ripple : mRipples) {
-            ripple.rippleOut();
-        }
+    public void onDetachedFromView() {
+        super.onDetachedFromView();
+        mRipples.restart();
     }
 }
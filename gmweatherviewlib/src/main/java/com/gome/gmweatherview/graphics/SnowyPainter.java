@@ -9,9 +9,11 @@ import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PathMeasure;
 import android.graphics.RadialGradient;
+import android.graphics.RectF;
 import android.graphics.Shader;
 
 import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.util.AlphaRamp;
 
 /**
  * @author Felix.Liang
@@ -21,8 +23,20 @@ public class SnowyPainter extends AbsPainter {
     private static final int NUMBER_OF_LINES = 7;
     private static final double COS = Math.cos(Math.toRadians(30));
     private static final double SIN = Math.sin(Math.toRadians(30));
-    private Shader mShader;
-    private Paint mBgPaint;
+    private static final int STATIC_ALPHA = 100;
+    private static final int LAYER_EDGES_AND_AXLES = 0;
+    private static final int AXLE_CENTER_COLOR = Color.WHITE;
+    private static final int AXLE_END_COLOR = 0x80CAD6D9;
+    /**
+     * Segments of a ring of radius 1 in all six directions, scaled to each ring's radius.
+     */
+    private static final float[] UNIT_RING = new float[6 * 2 * 4];
+
+    static {
+        int index = putSixfold(UNIT_RING, 0, (float) -COS, (float) (1 + SIN), 0, 1);
+        putSixfold(UNIT_RING, index, 0, 1, (float) COS, (float) (1 + SIN));
+    }
+
     private Paint mSmallSnowflakePaint;
     private Paint mSnowflakePaint;
     private Paint mAxlePaint;
@@ -47,8 +61,12 @@ public class SnowyPainter extends AbsPainter {
     private float[] mPos = new float[2];
     private float[] mTan = new float[2];
     private float mRouteLength;
-    private int mCurrentDistance;
+    private float mCurrentDistance;
     private float mSnowOffset;
+    private int mRingStride = 1;
+    private final float[] mRingPoints = new float[UNIT_RING.length];
+    private final float[] mEdgePoints = new float[6 * 4 * 4];
+    private final float[] mAxlePoints = new float[6 * 4];
 
     public SnowyPainter(Context context) {
         super(context);
@@ -57,11 +75,10 @@ public class SnowyPainter extends AbsPainter {
 
     private void init() {
         initPaints();
+        initStaticGeometry();
     }
 
     private void initPaints() {
-        mBgPaint = new Paint(Paint.DITHER_FLAG);
-        mBgPaint.setStyle(Paint.Style.FILL_AND_STROKE);
         mSmallSnowflakePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mSmallSnowflakePaint.setFilterBitmap(true);
         mSnowflakePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
@@ -72,23 +89,79 @@ public class SnowyPainter extends AbsPainter {
         mAxlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mAxlePaint.setColor(0xFFCAD6D9);
         mAxlePaint.setStyle(Paint.Style.STROKE);
-        mAxlePaint.setAlpha(100);
         mAxlePaint.setStrokeWidth(dp2px(2));
         mEdgePaint = new Paint();
         mEdgePaint.set(mAxlePaint);
-        mAxlePaint.setShader(new RadialGradient(0, 0, mAxleLength, Color.WHITE, 0x80CAD6D9, Shader.TileMode.CLAMP));
+        updateStaticAlpha();
+    }
+
+    /**
+     * The edges and axles do not move, so their six-fold endpoints are computed once.
+     */
+    private void initStaticGeometry() {
+        int index = putSixfold(mEdgePoints, 0, -mX, mY, 0, mEdgeRadius);
+        index = putSixfold(mEdgePoints, index, 0, mEdgeRadius, mX, mY);
+        index = putSixfold(mEdgePoints, index, -mX2, mY2, 0, mEdge2Radius);
+        putSixfold(mEdgePoints, index, 0, mEdge2Radius, mX2, mY2);
+        putSixfold(mAxlePoints, 0, 0, 0, 0, mAxleLength);
+    }
+
+    /**
+     * Edges and axles used to be drawn again with every ring at {@value #STATIC_ALPHA}; drawing
+     * them once with the alpha of that many stacked layers looks alike.
+     */
+    private void updateStaticAlpha() {
+        final int rings = (NUMBER_OF_LINES + mRingStride - 1) / mRingStride;
+        mEdgePaint.setAlpha(stackedAlpha(STATIC_ALPHA, rings));
+        mAxlePaint.setShader(new RadialGradient(0, 0, mAxleLength,
+                withStackedAlpha(AXLE_CENTER_COLOR, rings), withStackedAlpha(AXLE_END_COLOR, rings),
+                Shader.TileMode.CLAMP));
+    }
+
+    private static int withStackedAlpha(int color, int layers) {
+        final int alpha = Color.alpha(color) * STATIC_ALPHA / 255;
+        return (color & 0xFFFFFF) | stackedAlpha(alpha, layers) << 24;
+    }
+
+    /**
+     * @return alpha of {@code layers} layers of {@code alpha} drawn over each other
+     */
+    private static int stackedAlpha(int alpha, int layers) {
+        return Math.round(255 * (1 - (float) Math.pow(1 - alpha / 255f, layers)));
+    }
+
+    /**
+     * Writes the segment and its five copies rotated by multiples of 60 degrees as
+     * {@link Canvas#drawLines(float[], Paint)} endpoints.
+     *
+     * @return index after the last value written
+     */
+    private static int putSixfold(float[] points, int index, float x0, float y0, float x1, float y1) {
+        for (int i = 0; i < 6; i++) {
+            final double angle = Math.toRadians(60 * i);
+            final float cos = (float) Math.cos(angle);
+            final float sin = (float) Math.sin(angle);
+            points[index++] = x0 * cos - y0 * sin;
+            points[index++] = x0 * sin + y0 * cos;
+            points[index++] = x1 * cos - y1 * sin;
+            points[index++] = x1 * sin + y1 * cos;
+        }
+        return index;
     }
 
     @Override
     protected void onSizeChanged(int w, int h) {
         super.onSizeChanged(w, h);
-        if (mShader == null) {
-            mShader = new LinearGradient(0, 0, 0, getHeight(), 0xFFDCE5E9, 0xFF7A9593, Shader.TileMode.CLAMP);
-            mBgPaint.setShader(mShader);
-        }
         mCurrentRadius = mMaxRadius;
         if (mPathMeasure == null)
             initPathMeasure();
+        if (mSmallSnowBmp == null)
+            initSmallSnowBmp();
+    }
+
+    @Override
+    protected Shader onCreateBackgroundShader(int w, int h) {
+        return new LinearGradient(0, 0, 0, h, 0xFFDCE5E9, 0xFF7A9593, Shader.TileMode.CLAMP);
     }
 
     private void initPathMeasure() {
@@ -102,11 +175,24 @@ public class SnowyPainter extends AbsPainter {
     }
 
     @Override
-    public void draw(Canvas canvas) {
-        canvas.drawPaint(mBgPaint);
+    protected void onDraw(Canvas canvas, long elapsedNanos) {
         drawSmallSnowflake(canvas, true);
         drawSmallSnowflake(canvas, false);
         drawMainSnowflake(canvas);
+        advance(toFrames(elapsedNanos));
+    }
+
+    private void advance(float frames) {
+        mCurrentRadius += frames;
+        while (mCurrentRadius > mMaxRadius) {
+            mCurrentRadius = mMinRadius + (mCurrentRadius - mMaxRadius);
+        }
+        mRotateDegree += 0.05f * frames;
+        mRotateDegree %= 360;
+        if (mRouteLength > 0) {
+            mCurrentDistance += 2 * frames;
+            mCurrentDistance %= mRouteLength;
+        }
     }
 
     private void drawMainSnowflake(Canvas canvas) {
@@ -114,11 +200,6 @@ public class SnowyPainter extends AbsPainter {
         canvas.translate(getWidth() * 0.8f, getHeight() * 0.15f);
         canvas.rotate(mRotateDegree);
         drawSnowflake(canvas);
-        mCurrentRadius++;
-        if (mCurrentRadius > mMaxRadius) {
-            mCurrentRadius = mMinRadius + (mCurrentRadius - mMaxRadius);
-        }
-        mRotateDegree += 0.05;
         canvas.restore();
     }
 
@@ -132,42 +213,75 @@ public class SnowyPainter extends AbsPainter {
             canvas.translate(mPos[0], mPos[1]);
             float degree = (float) Math.toDegrees(Math.atan2(mTan[1], mTan[0]));
             canvas.rotate(degree);
-            if (mSmallSnowBmp == null) {
-                initSmallSnowBmp();
-            }
             int alpha = getCurrentAlpha(distance / mRouteLength);
             mSmallSnowflakePaint.setAlpha(alpha);
             canvas.drawBitmap(mSmallSnowBmp, -mSmallSnowBmp.getWidth() / 2, -mSmallSnowBmp.getHeight() / 2, mSmallSnowflakePaint);
+            countDrawCalls(1);
             canvas.restore();
-            if (isFirst) {
-                mCurrentDistance += 2;
-                mCurrentDistance %= mRouteLength;
-            }
         }
     }
 
+    /**
+     * Draws each ring with one batched call, then the recorded edges and axles once on top.
+     */
     private void drawSnowflake(Canvas canvas) {
+        final float[] points = mRingPoints;
         float r = mCurrentRadius;
-        for (int j = 0; j < NUMBER_OF_LINES; j++) {
+        for (int j = 0; j < NUMBER_OF_LINES; j += mRingStride) {
             final int alpha = getSnowLineAlpha(r);
             mSnowflakePaint.setAlpha(alpha);
-            float x = (float) (r * COS);
-            float y = (float) (r * (1 + SIN));
-            for (int i = 0; i < 6; i++) {
-                canvas.drawLine(-x, y, 0, r, mSnowflakePaint);
-                canvas.drawLine(0, r, x, y, mSnowflakePaint);
-                canvas.drawLine(-mX, mY, 0, mEdgeRadius, mEdgePaint);
-                canvas.drawLine(0, mEdgeRadius, mX, mY, mEdgePaint);
-                canvas.drawLine(-mX2, mY2, 0, mEdge2Radius, mEdgePaint);
-                canvas.drawLine(0, mEdge2Radius, mX2, mY2, mEdgePaint);
-                canvas.drawLine(0, 0, 0, mAxleLength, mAxlePaint);
-                canvas.rotate(60);
-            }
-            r += mDeltaRadius;
+            for (int i = 0; i < points.length; i++) points[i] = UNIT_RING[i] * r;
+            canvas.drawLines(points, mSnowflakePaint);
+            countDrawCalls(1);
+            r += mDeltaRadius * mRingStride;
             if (r > mMaxRadius) {
                 r = mMinRadius + (r - mMaxRadius);
             }
         }
+        drawLayer(canvas, LAYER_EDGES_AND_AXLES);
+    }
+
+    @Override
+    protected void onGetLayerBounds(int layer, RectF bounds) {
+        final float extent = mAxleLength + mAxlePaint.getStrokeWidth();
+        bounds.set(-extent, -extent, extent, extent);
+    }
+
+    @Override
+    protected void onRecordLayer(int layer, Canvas canvas) {
+        canvas.drawLines(mEdgePoints, mEdgePaint);
+        canvas.drawLines(mAxlePoints, mAxlePaint);
+    }
+
+    /**
+     * The low tier draws every other ring and drops anti-aliasing.
+     */
+    @Override
+    protected void onQualityChanged(int quality) {
+        mRingStride = quality == QUALITY_LOW ? 2 : 1;
+        updateStaticAlpha();
+        mSnowflakePaint.setAntiAlias(isSmooth());
+        mAxlePaint.setAntiAlias(isSmooth());
+        mEdgePaint.setAntiAlias(isSmooth());
+        mSmallSnowflakePaint.setAntiAlias(isSmooth());
+    }
+
+    @Override
+    protected void onTrimMemory() {
+        if (mSmallSnowBmp != null) {
+            mSmallSnowBmp.recycle();
+            mSmallSnowBmp = null;
+        }
+    }
+
+    @Override
+    protected long onEstimateMemory() {
+        final Bitmap bitmap = mSmallSnowBmp;
+        // the route kept by the path measure and the point buffers of the big snowflake
+        final long paths = mPathMeasure != null ? estimatePath(4) : 0;
+        final long arrays = estimateFloats(mRingPoints.length) + estimateFloats(mEdgePoints.length)
+                + estimateFloats(mAxlePoints.length);
+        return (bitmap != null ? bitmap.getByteCount() : 0) + paths + arrays;
     }
 
     private void initSmallSnowBmp() {
@@ -186,7 +300,6 @@ public class SnowyPainter extends AbsPainter {
     }
 
     private int getCurrentAlpha(float fraction) {
-        if (fraction < 0.2f) return (int) (200 * 5 * fraction);
-        else return (int) (200 * (-1.25 * fraction + 1.25));
+        return AlphaRamp.tent(fraction, 0.2f, 200);
     }
 }
@@ -1,9 +1,6 @@
 package com.gome.gmweatherview.graphics;
 
-import android.animation.Animator;
-import android.animation.AnimatorSet;
 import android.animation.TimeInterpolator;
-import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Canvas;
@@ -13,6 +10,7 @@ import android.graphics.LinearGradient;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.RectF;
 import android.graphics.Shader;
 import android.graphics.SweepGradient;
 import android.os.Build;
@@ -20,14 +18,16 @@ import android.view.animation.AccelerateDecelerateInterpolator;
 
 import com.gome.gmweatherview.base.AbsPainter;
 import com.gome.gmweatherview.util.CubicBezierInterpolator;
+import com.gome.gmweatherview.util.Geometry;
 
 /**
  * @author Felix.Liang
  */
 public class SunnyPainter extends AbsPainter {
 
-    private static final int TAG_SCALE = 1;
-    private static final int TAG_ROTATE = 2;
+    private static final long SCALE_DURATION = 16200;
+    private static final long ROTATE_DURATION = 40500;
+    private static final long ROTATE_DELAY = 240;
     private static final int NUMBER_OF_LINES = 6;
     private static final int NUMBER_OF_SIDES = 6;
     private static final int MAX_LINE_ALPHA = 180;
@@ -39,25 +39,22 @@ public class SunnyPainter extends AbsPainter {
     private float[] mScales;
     private float[] mRotates;
     private Path[] mLines;
+    private float mOuterRadius;
+    private int mRingStride = 1;
     private int[] mColors = {0x00FFFFFF, Color.WHITE, Color.WHITE, 0x00FFFFFF};
     private float[] mPositions = {0.05f, 0.35f, 0.65f, 0.95f};
-    private AnimatorSet mAnimatorSet;
-    private Paint mBgPaint;
+    private TimeInterpolator mScaleInterpolator;
+    private TimeInterpolator mRotateInterpolator;
+    private long mElapsedNanos;
     private int[] mBgColors = {0xFFEF643C, 0xFFDEE3D1, 0xFFD6EAE3};
     private float[] mBgPos = {0, 0.8F, 1};
-    private LinearGradient mShader;
 
     public SunnyPainter(Context context) {
         super(context);
         init();
     }
 
-    @Override
-    public void onAttachedToView() {
-        super.onAttachedToView();
-        if (mAnimatorSet != null) mAnimatorSet.start();
-    }
-
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP_MR1)
     private void init() {
         mLinePaints = new Paint[NUMBER_OF_LINES];
         mScales = new float[NUMBER_OF_LINES];
@@ -66,6 +63,8 @@ public class SunnyPainter extends AbsPainter {
             mScales[i] = 1;
             mRotates[i] = (4 - i) * 2;
         }
+        mScaleInterpolator = new AccelerateDecelerateInterpolator();
+        mRotateInterpolator = new CubicBezierInterpolator(.2f, .27f, .7f, .92f);
         mLines = new Path[NUMBER_OF_LINES];
         for (int i = 0; i < mLines.length; i++) {
             mLines[i] = new Path();
@@ -88,109 +87,127 @@ public class SunnyPainter extends AbsPainter {
             mLinePaints[i].setShader(sweepGradient);
             mLinePaints[i].setAlpha(MAX_LINE_ALPHA - dAlpha * i);
         }
-        mBgPaint = new Paint(Paint.DITHER_FLAG);
-        mBgPaint.setStyle(Paint.Style.FILL_AND_STROKE);
     }
 
     @Override
     protected void onSizeChanged(int w, int h) {
         super.onSizeChanged(w, h);
         updatePath();
-        if (mShader == null) {
-            mShader = new LinearGradient(0, 0, 0, getHeight(), mBgColors, mBgPos, Shader.TileMode.CLAMP);
-            mBgPaint.setShader(mShader);
-        }
-        if (mAnimatorSet == null) {
-            mAnimatorSet = getWeatherAnimatorSet();
-        }
-        mAnimatorSet.start();
+        prepareLines();
+    }
+
+    @Override
+    protected Shader onCreateBackgroundShader(int w, int h) {
+        return new LinearGradient(0, 0, 0, h, mBgColors, mBgPos, Shader.TileMode.CLAMP);
+    }
+
+    @Override
+    protected long onEstimateMemory() {
+        // the ring paths plus their scales and rotations
+        return NUMBER_OF_LINES * estimatePath(NUMBER_OF_SIDES) + 2 * estimateFloats(NUMBER_OF_LINES);
     }
 
     private void updatePath() {
         final float minRadius = (Math.min(getWidth(), getHeight()) / 2 - mLineWidth / 2) * 0.8f;
-        final float degree = 360f / NUMBER_OF_SIDES;
         final int dRadius = dp2px(3);
+        final float[] vertices = new float[NUMBER_OF_SIDES * 2];
         float radius = minRadius;
         for (int i = 0; i < mLines.length; i++) {
             if (mLines[i] == null) mLines[i] = new Path();
             else mLines[i].reset();
-            for (int j = 0; j < NUMBER_OF_SIDES; j++) {
-                float currX = (float) (radius * Math.sin(Math.toRadians(j * degree)));
-                float currY = (float) (-radius * Math.cos(Math.toRadians(j * degree)));
-                if (j == 0) mLines[i].moveTo(currX, currY);
-                else mLines[i].lineTo(currX, currY);
+            Geometry.polygon(vertices, NUMBER_OF_SIDES, radius);
+            mLines[i].moveTo(vertices[0], vertices[1]);
+            for (int j = 1; j < NUMBER_OF_SIDES; j++) {
+                mLines[i].lineTo(vertices[j * 2], vertices[j * 2 + 1]);
             }
             mLines[i].close();
             radius += dRadius;
         }
-    }
-
-    @TargetApi(Build.VERSION_CODES.LOLLIPOP_MR1)
-    private AnimatorSet getWeatherAnimatorSet() {
-        mAnimatorSet = new AnimatorSet();
-        ValueAnimator[][] animators = new ValueAnimator[2][NUMBER_OF_LINES];
-        for (int i = 0; i < animators.length; i++) {
-            final boolean isRotate = i == 1;
-            for (int j = 0; j < animators[i].length; j++) {
-                final int finalJ = j;
-                animators[i][j] = ValueAnimator.ofFloat(0, 1);
-                TimeInterpolator interpolator;
-                interpolator = isRotate ? new CubicBezierInterpolator(.2f, .27f, .7f, .92f) : new AccelerateDecelerateInterpolator();
-                animators[i][j].setInterpolator(interpolator);
-                animators[i][j].setDuration(isRotate ? 40500 : 16200);
-                animators[i][j].setRepeatCount(ValueAnimator.INFINITE);
-                if (isRotate) animators[i][j].setStartDelay(240 * j);
-                animators[i][j].addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                    @Override
-                    public void onAnimationUpdate(ValueAnimator animation) {
-                        float value = (float) animation.getAnimatedValue();
-                        if (isRotate)
-                            updateView(TAG_ROTATE, finalJ, value);
-                        else
-                            updateView(TAG_SCALE, finalJ, value);
-                    }
-                });
-            }
-        }
-        mAnimatorSet.playTogether((Animator[]) animators[0]);
-        mAnimatorSet.playTogether((Animator[]) animators[1]);
-        return mAnimatorSet;
+        mOuterRadius = radius + mLineWidth;
     }
 
     @Override
     public void onDetachedFromView() {
         super.onDetachedFromView();
-        if (mAnimatorSet != null) mAnimatorSet.end();
+        reset();
     }
 
-    private void updateView(int tag, Object... params) {
-        onUpdateWithParameters(tag, params);
+    private void reset() {
+        mElapsedNanos = 0;
+        for (int i = 0; i < NUMBER_OF_LINES; i++) {
+            mScales[i] = 1;
+            mRotates[i] = (4 - i) * 2;
+        }
     }
 
-    private void onUpdateWithParameters(int tag, Object[] params) {
-        final int index = (int) params[0];
-        final float value = (float) params[1];
-        if (tag == TAG_SCALE) {
-            mScales[index] = (float) Math.sin(Math.PI * value) * (index + 1) * 0.04f + 1;
-        } else if (tag == TAG_ROTATE) {
-            mRotates[index] = 360 * value + (4 - index) * 2;
+    /**
+     * Each line repeats a scale cycle of {@link #SCALE_DURATION} and a rotation cycle of
+     * {@link #ROTATE_DURATION}, the latter delayed by {@link #ROTATE_DELAY} per line.
+     */
+    private void updateLines(long elapsedNanos) {
+        mElapsedNanos += elapsedNanos;
+        final long elapsedMillis = mElapsedNanos / 1000000;
+        final float scaleFraction = (float) (elapsedMillis % SCALE_DURATION) / SCALE_DURATION;
+        final float scaleValue = mScaleInterpolator.getInterpolation(scaleFraction);
+        for (int i = 0; i < NUMBER_OF_LINES; i++) {
+            mScales[i] = (float) Math.sin(Math.PI * scaleValue) * (i + 1) * 0.04f + 1;
+            final long rotateTime = elapsedMillis - ROTATE_DELAY * i;
+            float rotateValue = 0;
+            if (rotateTime > 0) {
+                final float rotateFraction = (float) (rotateTime % ROTATE_DURATION) / ROTATE_DURATION;
+                rotateValue = mRotateInterpolator.getInterpolation(rotateFraction);
+            }
+            mRotates[i] = 360 * rotateValue + (4 - i) * 2;
         }
     }
 
     @Override
-    public void draw(Canvas canvas) {
-        canvas.drawPaint(mBgPaint);
+    protected void onDraw(Canvas canvas, long elapsedNanos) {
+        updateLines(elapsedNanos);
         canvas.translate(getWidth() / 2, getHeight() * 0.3f);
         drawLines(canvas);
     }
 
+    /**
+     * The low tier keeps every other ring and drops anti-aliasing.
+     */
+    @Override
+    protected void onQualityChanged(int quality) {
+        mRingStride = quality == QUALITY_LOW ? 2 : 1;
+        for (Paint paint : mLinePaints) paint.setAntiAlias(isSmooth());
+        prepareLines();
+    }
+
+    /**
+     * Records the ring layers when the paths or paints change, so drawing never records.
+     */
+    private void prepareLines() {
+        for (int i = 0; i < mLines.length; i += mRingStride) prepareLayer(i);
+    }
+
+    /**
+     * Every ring is a recorded layer replayed under its own scale and rotation. Replay saves
+     * issuing the path and its paint through the canvas each frame, but the corner path effect
+     * and the sweep gradient are still applied when the picture is played back, and the gain
+     * has not been measured.
+     */
     private void drawLines(Canvas canvas) {
-        for (int i = 0; i < mLines.length; i++) {
+        for (int i = 0; i < mLines.length; i += mRingStride) {
             canvas.save();
             canvas.scale(mScales[i], mScales[i]);
             canvas.rotate(-mRotates[i]);
-            canvas.drawPath(mLines[i], mLinePaints[i]);
+            drawLayer(canvas, i);
             canvas.restore();
         }
     }
+
+    @Override
+    protected void onGetLayerBounds(int layer, RectF bounds) {
+        bounds.set(-mOuterRadius, -mOuterRadius, mOuterRadius, mOuterRadius);
+    }
+
+    @Override
+    protected void onRecordLayer(int layer, Canvas canvas) {
+        canvas.drawPath(mLines[layer], mLinePaints[layer]);
+    }
 }
\ No newline at end of file
@@ -1,8 +1,14 @@
 package com.gome.gmweatherview.util;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.util.SparseArray;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import com.gome.gmweatherview.base.AbsPainter;
 import com.gome.gmweatherview.graphics.CloudyPainter;
 import com.gome.gmweatherview.graphics.FoggyPainter;
 import com.gome.gmweatherview.graphics.HazyPainter;
@@ -13,6 +19,12 @@ import com.gome.gmweatherview.graphics.SandyPainter;
 import com.gome.gmweatherview.graphics.SnowyPainter;
 import com.gome.gmweatherview.graphics.SunnyPainter;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 import static com.gome.gmweatherview.widget.WeatherView.TYPE_CLOUDY;
 import static com.gome.gmweatherview.widget.WeatherView.TYPE_FOGGY;
 import static com.gome.gmweatherview.widget.WeatherView.TYPE_HAZY;
@@ -25,24 +37,201 @@ import static com.gome.gmweatherview.widget.WeatherView.TYPE_SUNNY;
 import static com.gome.gmweatherview.widget.WeatherView.WeatherType;
 
 /**
+ * Hands each view a painter of its own, since a painter keeps the animation clock, size and
+ * quality tier of the one view that draws it. The last painter created for each type is kept
+ * in a least recently used cache bounded by the memory estimates, handed out again once no
+ * view holds it, and gives up its resources when the system runs low on memory.
+ *
  * @author Felix.Liang
  */
+@SuppressWarnings({"WeakerAccess", "unused"})
 public class PainterFactory {
 
-    private static SparseArray<Painter> sInstances = new SparseArray<>();
+    private static final int DEFAULT_CACHE_DIVISOR = 8;
+
+    private static final LinkedHashMap<Integer, Painter> sInstances = new LinkedHashMap<>(16, 0.75f, true);
+    private static long sMaxCacheBytes = Runtime.getRuntime().maxMemory() / DEFAULT_CACHE_DIVISOR;
+    private static boolean sCallbacksRegistered;
+    private static ExecutorService sPrewarmExecutor;
 
-    public static Painter getInstance(Context context, @WeatherType int type) {
+    /**
+     * Hands out the cached painter of a type if no view holds it, or else a new one that takes
+     * its place in the cache. It is pinned so that it is neither trimmed nor handed to another
+     * caller before it is passed to {@link #release(Painter)}.
+     */
+    public static synchronized Painter getInstance(Context context, @WeatherType int type) {
         if (type == TYPE_NONE) return null;
-        if (sInstances.size() == 0) {
-            return createNewInstance(context, type);
-        } else {
-            Painter painter = sInstances.get(type);
-            if (painter == null) painter = createNewInstance(context, type);
-            return painter;
-        }
+        registerCallbacks(context);
+        Painter painter = sInstances.get(type);
+        if (painter == null || isHeld(painter)) painter = createNewInstance(context, type);
+        if (painter instanceof AbsPainter) ((AbsPainter) painter).pin();
+        trimToSize(sMaxCacheBytes);
+        return painter;
+    }
+
+    /**
+     * Gives back a painter handed out by {@link #getInstance(Context, int)}, which may then be
+     * trimmed, handed out again or dropped once no view renders it.
+     */
+    public static synchronized void release(@Nullable Painter painter) {
+        if (painter instanceof AbsPainter) ((AbsPainter) painter).unpin();
+    }
+
+    /**
+     * A painter a view still holds or renders is never handed to a second one.
+     */
+    private static boolean isHeld(Painter painter) {
+        if (!(painter instanceof AbsPainter)) return false;
+        final AbsPainter absPainter = (AbsPainter) painter;
+        return absPainter.isPinned() || absPainter.isAttached() || absPainter.isPrewarming();
     }
 
     private static Painter createNewInstance(Context context, int type) {
+        Painter painter = createPainter(context, type);
+        if (painter != null) {
+            sInstances.put(type, painter);
+        }
+        return painter;
+    }
+
+    /**
+     * Creates the painters of the given types on a background thread and builds their resources
+     * for a surface of {@code w} x {@code h} drawn at {@code renderScale}, see
+     * {@link AbsPainter#setSize(int, int, float)}, drawing {@code frames} off screen frames each to fill
+     * their caches. Types whose cached painter a view holds get a new one, which the next
+     * {@link #getInstance(Context, int)} hands out. The listener is called on the main thread
+     * once all of them are ready; they are not pinned for it.
+     */
+    public static void prewarm(Context context, final int[] types, final int w, final int h,
+                               final float renderScale, final int frames,
+                               @Nullable final OnPrewarmListener listener) {
+        final Context appContext = context.getApplicationContext();
+        final Handler handler = new Handler(Looper.getMainLooper());
+        getPrewarmExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int type : types) {
+                    final Painter painter = getInstance(appContext, type);
+                    if (painter instanceof AbsPainter) ((AbsPainter) painter).prewarm(w, h, renderScale, frames);
+                    release(painter);
+                }
+                if (listener != null) {
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onPrewarmed(types);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private static synchronized ExecutorService getPrewarmExecutor() {
+        if (sPrewarmExecutor == null) {
+            sPrewarmExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    final Thread thread = new Thread(r, "PainterFactory-Prewarm");
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sPrewarmExecutor;
+    }
+
+    /**
+     * Sets how many bytes the cached painters may hold before the least recently used ones that
+     * no view holds are dropped. Defaults to an eighth of the maximum heap size.
+     */
+    public static synchronized void setMaxCacheBytes(long maxBytes) {
+        sMaxCacheBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public static synchronized long getMaxCacheBytes() {
+        return sMaxCacheBytes;
+    }
+
+    /**
+     * @return estimated bytes held by all cached painters
+     */
+    public static synchronized long getCacheBytes() {
+        long bytes = 0;
+        for (Painter painter : sInstances.values()) bytes += estimate(painter);
+        return bytes;
+    }
+
+    /**
+     * Releases the resources of every cached painter that no view holds. They are rebuilt
+     * when the painter is drawn again. Painters being prewarmed are skipped, not waited for.
+     */
+    public static synchronized void trimMemory() {
+        for (Painter painter : sInstances.values()) {
+            if (painter instanceof AbsPainter) ((AbsPainter) painter).trimMemory();
+        }
+    }
+
+    /**
+     * Drops least recently used painters that no view holds until the estimate fits, skipping
+     * those being prewarmed.
+     */
+    private static void trimToSize(long maxBytes) {
+        long bytes = getCacheBytes();
+        final Iterator<Painter> iterator = sInstances.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            final Painter painter = iterator.next();
+            if (!(painter instanceof AbsPainter)) continue;
+            final AbsPainter absPainter = (AbsPainter) painter;
+            final long size = absPainter.getMemoryEstimate();
+            if (absPainter.trimMemory()) {
+                iterator.remove();
+                bytes -= size;
+            }
+        }
+    }
+
+    private static long estimate(Painter painter) {
+        return painter instanceof AbsPainter ? ((AbsPainter) painter).getMemoryEstimate() : 0;
+    }
+
+    private static void registerCallbacks(Context context) {
+        if (sCallbacksRegistered) return;
+        sCallbacksRegistered = true;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                    setCacheEmpty();
+                } else {
+                    trimMemory();
+                }
+            }
+
+            @Override
+            public void onLowMemory() {
+                setCacheEmpty();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+        });
+    }
+
+    private static synchronized void setCacheEmpty() {
+        trimMemory();
+        trimToSize(0);
+    }
+
+    /**
+     * Creates a painter that is not cached by {@link #getInstance(Context, int)}, e.g. to
+     * render a type off screen without taking the cached one from the views.
+     *
+     * @return new painter, or null for {@link com.gome.gmweatherview.widget.WeatherView#TYPE_NONE}
+     */
+    public static Painter createPainter(Context context, @WeatherType int type) {
         Painter painter = null;
         switch (type) {
             case TYPE_CLOUDY:
@@ -70,9 +259,11 @@ public class PainterFactory {
                 painter = new HazyPainter(context);
                 break;
         }
-        if (painter != null) {
-            sInstances.put(type, painter);
-        }
         return painter;
     }
+
+    public interface OnPrewarmListener {
+
+        void onPrewarmed(int[] types);
+    }
 }
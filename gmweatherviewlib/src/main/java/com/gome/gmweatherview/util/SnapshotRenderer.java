@@ -0,0 +1,184 @@
+package com.gome.gmweatherview.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.util.LruCache;
+
+import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.base.Painter;
+import com.gome.gmweatherview.graphics.RainyPainter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static com.gome.gmweatherview.widget.WeatherView.WeatherType;
+
+/**
+ * Renders still frames of a weather type into bitmaps, e.g. for list rows that should not each
+ * hold a live surface. Every snapshot is drawn by a fresh painter advanced to the requested
+ * animation phase, so equal requests give equal bitmaps. Results are kept in a least recently
+ * used cache bounded in bytes and are shared: callers must neither modify nor recycle them.
+ *
+ * @author Felix.Liang
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class SnapshotRenderer {
+
+    private static final int DEFAULT_CACHE_DIVISOR = 16;
+    /**
+     * Largest clock step used while advancing a painter to its phase, the same bound the live
+     * view puts on a frame.
+     */
+    private static final long MAX_STEP_NANOS = 100000000L;
+    private static final long SEED = 0x5EED;
+
+    private static final LruCache<String, Bitmap> sCache =
+            new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / DEFAULT_CACHE_DIVISOR)) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getByteCount();
+                }
+            };
+    private static final Map<String, List<OnSnapshotListener>> sPending = new HashMap<>();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static ExecutorService sExecutor;
+
+    /**
+     * @return the cached snapshot, or null if it has not been rendered or was evicted
+     */
+    public static Bitmap getCached(@WeatherType int type, int w, int h, long phaseNanos) {
+        return sCache.get(key(type, w, h, phaseNanos));
+    }
+
+    /**
+     * Delivers the snapshot to the listener on the main thread, right away when cached and
+     * otherwise once it was rendered on a background thread. Requests for a snapshot that is
+     * already being rendered share that work.
+     *
+     * @param phaseNanos animation time the snapshot shows, counted from the painter's start and
+     *                   taken modulo {@link AbsPainter#getLoopDurationNanos()} for periodic types
+     */
+    @MainThread
+    public static void render(Context context, @WeatherType final int type, final int w, final int h,
+                              final long phaseNanos, @NonNull OnSnapshotListener listener) {
+        final String key = key(type, w, h, phaseNanos);
+        final Bitmap cached = sCache.get(key);
+        if (cached != null) {
+            listener.onSnapshot(type, cached);
+            return;
+        }
+        List<OnSnapshotListener> listeners = sPending.get(key);
+        if (listeners != null) {
+            listeners.add(listener);
+            return;
+        }
+        listeners = new ArrayList<>();
+        listeners.add(listener);
+        sPending.put(key, listeners);
+        final Context appContext = context.getApplicationContext();
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = renderNow(appContext, type, w, h, phaseNanos);
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        final List<OnSnapshotListener> listeners = sPending.remove(key);
+                        if (listeners == null) return;
+                        for (OnSnapshotListener l : listeners) l.onSnapshot(type, bitmap);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Renders the snapshot on the calling thread, or returns it from the cache.
+     *
+     * @return the snapshot, or null for {@link com.gome.gmweatherview.widget.WeatherView#TYPE_NONE}
+     * or an empty size
+     */
+    @WorkerThread
+    public static Bitmap renderNow(Context context, @WeatherType int type, int w, int h, long phaseNanos) {
+        final String key = key(type, w, h, phaseNanos);
+        Bitmap bitmap = sCache.get(key);
+        if (bitmap != null) return bitmap;
+        final Painter painter = PainterFactory.createPainter(context, type);
+        if (painter == null || w <= 0 || h <= 0) return null;
+        if (painter instanceof RainyPainter) ((RainyPainter) painter).setSeed(SEED);
+        painter.onAttachedToView();
+        painter.setSize(w, h);
+        // a periodic painter looks the same a whole loop later, so never step more than one
+        final long loopNanos = painter instanceof AbsPainter ? ((AbsPainter) painter).getLoopDurationNanos() : 0;
+        final long phase = loopNanos > 0 ? phaseNanos % loopNanos : phaseNanos;
+        final String loopKey = key(type, w, h, phase);
+        bitmap = sCache.get(loopKey);
+        if (bitmap != null) {
+            painter.onDetachedFromView();
+            return bitmap;
+        }
+        // painters advance after drawing, so step the clock on a scratch canvas first
+        final Bitmap scratch = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+        final Canvas scratchCanvas = new Canvas(scratch);
+        long remaining = phase;
+        while (remaining > 0) {
+            final long step = Math.min(remaining, MAX_STEP_NANOS);
+            final int count = scratchCanvas.save();
+            painter.draw(scratchCanvas, step);
+            scratchCanvas.restoreToCount(count);
+            remaining -= step;
+        }
+        scratch.recycle();
+        bitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        painter.draw(new Canvas(bitmap), 0);
+        painter.onDetachedFromView();
+        sCache.put(loopKey, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Sets how many bytes of snapshots are cached. Defaults to a sixteenth of the maximum heap
+     * size.
+     */
+    public static void setMaxCacheBytes(int maxBytes) {
+        sCache.resize(maxBytes);
+    }
+
+    public static void clearCache() {
+        sCache.evictAll();
+    }
+
+    private static String key(int type, int w, int h, long phaseNanos) {
+        return type + ":" + w + "x" + h + "@" + phaseNanos;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    final Thread thread = new Thread(r, "SnapshotRenderer");
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    public interface OnSnapshotListener {
+
+        void onSnapshot(@WeatherType int type, Bitmap snapshot);
+    }
+}
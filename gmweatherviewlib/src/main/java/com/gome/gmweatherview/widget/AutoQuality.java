@@ -0,0 +1,55 @@
+package com.gome.gmweatherview.widget;
+
+import com.gome.gmweatherview.base.AbsPainter;
+
+/**
+ * Picks the quality tier from measured draw times: one tier down as soon as the smoothed draw
+ * time takes most of the frame budget, one tier up after a sustained stretch of headroom.
+ *
+ * @author Felix.Liang
+ */
+final class AutoQuality {
+
+    private static final float SMOOTHING = 0.1f;
+    private static final float DOWNGRADE_RATIO = 0.8f;
+    private static final float UPGRADE_RATIO = 0.4f;
+    private static final long UPGRADE_AFTER_NANOS = 3000000000L;
+    /**
+     * Frames ignored after a change, while caches of the new tier are built.
+     */
+    private static final int SETTLE_FRAMES = 30;
+
+    private int mTier = AbsPainter.QUALITY_HIGH;
+    private float mAverageNanos;
+    private int mFrames;
+    private long mHeadroomNanos;
+
+    int getTier() {
+        return mTier;
+    }
+
+    /**
+     * Records the draw time of a frame that had {@code budgetNanos} to render.
+     */
+    void onFrame(long drawNanos, long budgetNanos) {
+        if (mFrames++ < SETTLE_FRAMES) {
+            mAverageNanos = drawNanos;
+            return;
+        }
+        mAverageNanos += SMOOTHING * (drawNanos - mAverageNanos);
+        if (mAverageNanos > budgetNanos * DOWNGRADE_RATIO) {
+            if (mTier > AbsPainter.QUALITY_LOW) setTier(mTier - 1);
+        } else if (mAverageNanos < budgetNanos * UPGRADE_RATIO) {
+            mHeadroomNanos += budgetNanos;
+            if (mHeadroomNanos >= UPGRADE_AFTER_NANOS && mTier < AbsPainter.QUALITY_HIGH) setTier(mTier + 1);
+        } else {
+            mHeadroomNanos = 0;
+        }
+    }
+
+    private void setTier(int tier) {
+        mTier = tier;
+        mFrames = 0;
+        mHeadroomNanos = 0;
+    }
+}
@@ -0,0 +1,123 @@
+package com.gome.gmweatherview.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.support.annotation.WorkerThread;
+
+import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.base.Painter;
+import com.gome.gmweatherview.util.PainterFactory;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * One loop of a periodic painter pre-rendered at reduced resolution and frame rate and kept as
+ * JPEG frames, so that playing it back costs a decode and a blit per frame whatever the painter
+ * draws.
+ *
+ * @author Felix.Liang
+ */
+final class BakedLoop {
+
+    private static final int JPEG_QUALITY = 85;
+    /**
+     * Longest loop worth baking. Longer ones, such as the hazy and sandy fields that take
+     * minutes to repeat, would not fit any sensible budget and are rendered live.
+     */
+    static final long MAX_LOOP_NANOS = 30 * 1000000000L;
+
+    final int type;
+    final int width;
+    final int height;
+    final float renderScale;
+    private final byte[][] mFrames;
+    private final long mFrameNanos;
+    private final int mFrameWidth;
+    private final int mFrameHeight;
+
+    private BakedLoop(int type, int width, int height, float renderScale, byte[][] frames,
+                      long frameNanos, int frameWidth, int frameHeight) {
+        this.type = type;
+        this.width = width;
+        this.height = height;
+        this.renderScale = renderScale;
+        mFrames = frames;
+        mFrameNanos = frameNanos;
+        mFrameWidth = frameWidth;
+        mFrameHeight = frameHeight;
+    }
+
+    /**
+     * Renders one loop of a fresh painter of {@code type} for a {@code width} x {@code height}
+     * surface rendered at {@code renderScale}, scaled by {@code scale} and sampled {@code fps}
+     * times per second.
+     *
+     * @return the loop, or null if the painter does not repeat within {@link #MAX_LOOP_NANOS} or
+     * its frames would take more than {@code maxBytes}
+     */
+    @WorkerThread
+    static BakedLoop bake(Context context, int type, int width, int height, float renderScale,
+                          float scale, int fps, long maxBytes) {
+        final Painter painter = PainterFactory.createPainter(context, type);
+        if (!(painter instanceof AbsPainter) || width <= 0 || height <= 0) return null;
+        final AbsPainter absPainter = (AbsPainter) painter;
+        absPainter.onAttachedToView();
+        Bitmap bitmap = null;
+        try {
+            // the loop length depends on sizes the painter only picks once it knows its own
+            absPainter.setSize(width, height, renderScale);
+            final long loopNanos = absPainter.getLoopDurationNanos();
+            if (loopNanos <= 0 || loopNanos > MAX_LOOP_NANOS) return null;
+            final int count = Math.max(1, Math.round(loopNanos * fps / 1e9f));
+            // spread the frames evenly over the loop so the last one leads back into the first
+            final long frameNanos = loopNanos / count;
+            final int frameWidth = Math.max(1, Math.round(width * scale));
+            final int frameHeight = Math.max(1, Math.round(height * scale));
+            bitmap = Bitmap.createBitmap(frameWidth, frameHeight, Bitmap.Config.ARGB_8888);
+            final Canvas canvas = new Canvas(bitmap);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[][] frames = new byte[count][];
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                final int save = canvas.save();
+                canvas.scale((float) frameWidth / width, (float) frameHeight / height);
+                painter.draw(canvas, frameNanos);
+                canvas.restoreToCount(save);
+                out.reset();
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+                total += out.size();
+                if (total > maxBytes) return null;
+                frames[i] = out.toByteArray();
+            }
+            return new BakedLoop(type, width, height, renderScale, frames, frameNanos, frameWidth, frameHeight);
+        } finally {
+            if (bitmap != null) bitmap.recycle();
+            painter.onDetachedFromView();
+        }
+    }
+
+    boolean matches(int type, int width, int height, float renderScale) {
+        return this.type == type && this.width == width && this.height == height
+                && this.renderScale == renderScale;
+    }
+
+    int getFrameIndex(long timeNanos) {
+        return (int) (timeNanos / mFrameNanos % mFrames.length);
+    }
+
+    long getLoopNanos() {
+        return mFrameNanos * mFrames.length;
+    }
+
+    /**
+     * Decodes a frame, reusing {@code reuse} when it is a mutable bitmap of the frame size.
+     */
+    Bitmap decode(int index, Bitmap reuse, BitmapFactory.Options options) {
+        options.inMutable = true;
+        options.inBitmap = reuse != null && !reuse.isRecycled()
+                && reuse.getWidth() == mFrameWidth && reuse.getHeight() == mFrameHeight ? reuse : null;
+        return BitmapFactory.decodeByteArray(mFrames[index], 0, mFrames[index].length, options);
+    }
+}
@@ -0,0 +1,162 @@
+package com.gome.gmweatherview.widget;
+
+/**
+ * Snapshot of the render loop statistics of a {@link WeatherView}. Timings cover the most
+ * recent frames kept by the view, counters cover everything since the view was created or the
+ * statistics were last reset.
+ *
+ * @author Felix.Liang
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class FrameStats {
+
+    private final int mSampleCount;
+    private final long mFrameCount;
+    private final long mDroppedFrameCount;
+    private final long mJankCount;
+    private final long mAverageLockNanos;
+    private final long mAverageDrawNanos;
+    private final long mAveragePostNanos;
+    private final long mMaxDrawNanos;
+    private final long mIntervalP50Nanos;
+    private final long mIntervalP95Nanos;
+    private final long mIntervalP99Nanos;
+    private final String[] mPainterNames;
+    private final long[] mPainterFrames;
+    private final long[] mPainterDrawCalls;
+
+    FrameStats(int sampleCount, long frameCount, long droppedFrameCount, long jankCount,
+               long averageLockNanos, long averageDrawNanos, long averagePostNanos, long maxDrawNanos,
+               long intervalP50Nanos, long intervalP95Nanos, long intervalP99Nanos,
+               String[] painterNames, long[] painterFrames, long[] painterDrawCalls) {
+        mSampleCount = sampleCount;
+        mFrameCount = frameCount;
+        mDroppedFrameCount = droppedFrameCount;
+        mJankCount = jankCount;
+        mAverageLockNanos = averageLockNanos;
+        mAverageDrawNanos = averageDrawNanos;
+        mAveragePostNanos = averagePostNanos;
+        mMaxDrawNanos = maxDrawNanos;
+        mIntervalP50Nanos = intervalP50Nanos;
+        mIntervalP95Nanos = intervalP95Nanos;
+        mIntervalP99Nanos = intervalP99Nanos;
+        mPainterNames = painterNames;
+        mPainterFrames = painterFrames;
+        mPainterDrawCalls = painterDrawCalls;
+    }
+
+    /**
+     * @return number of recent frames the timings and percentiles are computed from
+     */
+    public int getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * @return number of frames rendered
+     */
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * @return number of vsync intervals the render loop missed
+     */
+    public long getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    /**
+     * @return number of frames whose lock, draw and post took longer than one vsync interval
+     */
+    public long getJankCount() {
+        return mJankCount;
+    }
+
+    /**
+     * @return average time spent waiting for the surface in lockCanvas
+     */
+    public long getAverageLockNanos() {
+        return mAverageLockNanos;
+    }
+
+    /**
+     * @return average time spent in {@link com.gome.gmweatherview.base.Painter#draw}
+     */
+    public long getAverageDrawNanos() {
+        return mAverageDrawNanos;
+    }
+
+    /**
+     * @return average time spent in unlockCanvasAndPost
+     */
+    public long getAveragePostNanos() {
+        return mAveragePostNanos;
+    }
+
+    public long getMaxDrawNanos() {
+        return mMaxDrawNanos;
+    }
+
+    /**
+     * @return median time between two rendered frames
+     */
+    public long getFrameIntervalP50Nanos() {
+        return mIntervalP50Nanos;
+    }
+
+    public long getFrameIntervalP95Nanos() {
+        return mIntervalP95Nanos;
+    }
+
+    public long getFrameIntervalP99Nanos() {
+        return mIntervalP99Nanos;
+    }
+
+    /**
+     * @return number of painters that rendered at least one frame
+     */
+    public int getPainterCount() {
+        return mPainterNames.length;
+    }
+
+    /**
+     * @return simple class name of the painter at {@code index}
+     */
+    public String getPainterName(int index) {
+        return mPainterNames[index];
+    }
+
+    public long getPainterFrameCount(int index) {
+        return mPainterFrames[index];
+    }
+
+    /**
+     * @return total canvas draw calls issued by the painter at {@code index}, or 0 if it does
+     * not report them
+     */
+    public long getPainterDrawCalls(int index) {
+        return mPainterDrawCalls[index];
+    }
+
+    public float getPainterDrawCallsPerFrame(int index) {
+        return mPainterFrames[index] == 0 ? 0 : (float) mPainterDrawCalls[index] / mPainterFrames[index];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("FrameStats{frames=").append(mFrameCount)
+                .append(", dropped=").append(mDroppedFrameCount)
+                .append(", jank=").append(mJankCount)
+                .append(", lockUs=").append(mAverageLockNanos / 1000)
+                .append(", drawUs=").append(mAverageDrawNanos / 1000)
+                .append(", postUs=").append(mAveragePostNanos / 1000)
+                .append(", intervalUs(p50/p95/p99)=").append(mIntervalP50Nanos / 1000)
+                .append('/').append(mIntervalP95Nanos / 1000)
+                .append('/').append(mIntervalP99Nanos / 1000);
+        for (int i = 0; i < mPainterNames.length; i++) {
+            sb.append(", ").append(mPainterNames[i]).append("DrawCalls=").append(getPainterDrawCallsPerFrame(i));
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,111 @@
+package com.gome.gmweatherview.widget;
+
+import com.gome.gmweatherview.base.AbsPainter;
+import com.gome.gmweatherview.base.Painter;
+
+import java.util.Arrays;
+
+/**
+ * Collects per-frame timings on the render thread into preallocated ring buffers, so recording
+ * never allocates. Snapshots are taken from any thread.
+ *
+ * @author Felix.Liang
+ */
+class FrameStatsRecorder {
+
+    private static final int CAPACITY = 240;
+    private static final int MAX_PAINTERS = 16;
+
+    private final long[] mLockNanos = new long[CAPACITY];
+    private final long[] mDrawNanos = new long[CAPACITY];
+    private final long[] mPostNanos = new long[CAPACITY];
+    private final long[] mIntervals = new long[CAPACITY];
+    private int mIndex;
+    private int mSize;
+    private int mIntervalIndex;
+    private int mIntervalSize;
+    private long mFrameCount;
+    private long mDroppedFrameCount;
+    private long mJankCount;
+    private final Class<?>[] mPainterClasses = new Class<?>[MAX_PAINTERS];
+    private final long[] mPainterFrames = new long[MAX_PAINTERS];
+    private final long[] mPainterDrawCalls = new long[MAX_PAINTERS];
+    private int mPainterCount;
+
+    synchronized void recordDropped(long missed) {
+        mDroppedFrameCount += missed;
+    }
+
+    synchronized void recordInterval(long intervalNanos) {
+        mIntervals[mIntervalIndex] = intervalNanos;
+        mIntervalIndex = (mIntervalIndex + 1) % CAPACITY;
+        if (mIntervalSize < CAPACITY) mIntervalSize++;
+    }
+
+    synchronized void recordFrame(Painter painter, long lockNanos, long drawNanos, long postNanos, long budgetNanos) {
+        mLockNanos[mIndex] = lockNanos;
+        mDrawNanos[mIndex] = drawNanos;
+        mPostNanos[mIndex] = postNanos;
+        mIndex = (mIndex + 1) % CAPACITY;
+        if (mSize < CAPACITY) mSize++;
+        mFrameCount++;
+        if (lockNanos + drawNanos + postNanos > budgetNanos) mJankCount++;
+        if (painter != null) recordPainter(painter);
+    }
+
+    private void recordPainter(Painter painter) {
+        final Class<?> cls = painter.getClass();
+        int i = 0;
+        while (i < mPainterCount && mPainterClasses[i] != cls) i++;
+        if (i == mPainterCount) {
+            if (i == MAX_PAINTERS) return;
+            mPainterClasses[i] = cls;
+            mPainterCount++;
+        }
+        mPainterFrames[i]++;
+        if (painter instanceof AbsPainter) mPainterDrawCalls[i] += ((AbsPainter) painter).getDrawCallCount();
+    }
+
+    synchronized long getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    synchronized void reset() {
+        mIndex = mSize = 0;
+        mIntervalIndex = mIntervalSize = 0;
+        mFrameCount = mDroppedFrameCount = mJankCount = 0;
+        Arrays.fill(mPainterClasses, null);
+        Arrays.fill(mPainterFrames, 0);
+        Arrays.fill(mPainterDrawCalls, 0);
+        mPainterCount = 0;
+    }
+
+    synchronized FrameStats snapshot() {
+        final long[] intervals = Arrays.copyOf(mIntervals, mIntervalSize);
+        Arrays.sort(intervals);
+        long maxDraw = 0;
+        for (int i = 0; i < mSize; i++) maxDraw = Math.max(maxDraw, mDrawNanos[i]);
+        final String[] names = new String[mPainterCount];
+        for (int i = 0; i < mPainterCount; i++) names[i] = mPainterClasses[i].getSimpleName();
+        return new FrameStats(mSize, mFrameCount, mDroppedFrameCount, mJankCount,
+                average(mLockNanos, mSize), average(mDrawNanos, mSize), average(mPostNanos, mSize), maxDraw,
+                percentile(intervals, 50), percentile(intervals, 95), percentile(intervals, 99),
+                names, Arrays.copyOf(mPainterFrames, mPainterCount), Arrays.copyOf(mPainterDrawCalls, mPainterCount));
+    }
+
+    private static long average(long[] values, int size) {
+        if (size == 0) return 0;
+        long sum = 0;
+        for (int i = 0; i < size; i++) sum += values[i];
+        return sum / size;
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) return 0;
+        final int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,150 @@
+package com.gome.gmweatherview.widget;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives the surfaces of every {@link WeatherView} in the process from one render thread and
+ * one vsync callback. Each vsync renders the targets that are on screen, starting after the
+ * last target rendered so that under a frame rate cap every view gets its turn.
+ *
+ * @author Felix.Liang
+ */
+final class RenderScheduler implements Choreographer.FrameCallback {
+
+    /**
+     * A surface rendered by the scheduler. All methods are called on the render thread.
+     */
+    interface Target {
+
+        /**
+         * @return false to skip this target for the current vsync, e.g. while it is off screen
+         */
+        boolean isRenderable();
+
+        void renderFrame(long frameTimeNanos, long vsyncIntervalNanos);
+
+        /**
+         * Called for every active target when the render thread missed vsync signals.
+         */
+        void onVsyncMissed(long missed);
+
+        /**
+         * Called once the target was removed, to release what it holds on the render thread.
+         */
+        void onRemoved();
+    }
+
+    private static RenderScheduler sInstance;
+
+    private final Handler mHandler;
+    private final List<Target> mTargets = new ArrayList<>();
+    private Choreographer mChoreographer;
+    private boolean mScheduled;
+    private long mVsyncIntervalNanos;
+    private long mLastVsyncNanos;
+    private int mNextIndex;
+    private float mTokens;
+    private volatile int mMaxFramesPerSecond;
+
+    static synchronized RenderScheduler getInstance() {
+        if (sInstance == null) sInstance = new RenderScheduler();
+        return sInstance;
+    }
+
+    private RenderScheduler() {
+        final HandlerThread thread = new HandlerThread("WeatherView-Render");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mChoreographer = Choreographer.getInstance();
+            }
+        });
+    }
+
+    /**
+     * Caps the frames rendered per second summed over all views, 0 for no cap.
+     */
+    void setMaxFramesPerSecond(int fps) {
+        mMaxFramesPerSecond = Math.max(0, fps);
+    }
+
+    int getMaxFramesPerSecond() {
+        return mMaxFramesPerSecond;
+    }
+
+    void add(final Target target, final long vsyncIntervalNanos) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mVsyncIntervalNanos = vsyncIntervalNanos;
+                mTargets.add(target);
+                if (!mScheduled) {
+                    mScheduled = true;
+                    mLastVsyncNanos = 0;
+                    mChoreographer.postFrameCallback(RenderScheduler.this);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops rendering the target and releases it on the render thread. Never blocks the caller.
+     */
+    void remove(final Target target) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final int index = mTargets.indexOf(target);
+                if (index < 0) return;
+                mTargets.remove(index);
+                if (index < mNextIndex) mNextIndex--;
+                target.onRemoved();
+            }
+        });
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        final int size = mTargets.size();
+        if (size == 0) {
+            mScheduled = false;
+            return;
+        }
+        final long interval = mVsyncIntervalNanos;
+        if (mLastVsyncNanos != 0) {
+            final long missed = (frameTimeNanos - mLastVsyncNanos + interval / 2) / interval - 1;
+            if (missed > 0) {
+                for (int i = 0; i < size; i++) mTargets.get(i).onVsyncMissed(missed);
+            }
+        }
+        int budget = size;
+        final int maxFps = mMaxFramesPerSecond;
+        if (maxFps > 0) {
+            final long elapsed = mLastVsyncNanos != 0 ? frameTimeNanos - mLastVsyncNanos : interval;
+            // unused frames carry over at most one round, so an idle cap cannot burst later
+            mTokens = Math.min(mTokens + maxFps * elapsed / 1e9f, size);
+            budget = (int) mTokens;
+        }
+        mLastVsyncNanos = frameTimeNanos;
+        int rendered = 0;
+        if (mNextIndex >= size) mNextIndex = 0;
+        final int start = mNextIndex;
+        for (int i = 0; i < size && rendered < budget; i++) {
+            final int index = (start + i) % size;
+            final Target target = mTargets.get(index);
+            if (!target.isRenderable()) continue;
+            target.renderFrame(frameTimeNanos, interval);
+            rendered++;
+            mNextIndex = index + 1;
+        }
+        if (maxFps > 0) mTokens -= rendered;
+        mChoreographer.postFrameCallback(this);
+    }
+}
@@ -2,23 +2,34 @@ package com.gome.gmweatherview.widget;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.os.Build;
 import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
+import android.util.Log;
+import android.view.Display;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
 
 import com.gome.gmweatherview.R;
+import com.gome.gmweatherview.base.AbsPainter;
 import com.gome.gmweatherview.base.Painter;
 import com.gome.gmweatherview.util.PainterFactory;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * @author Felix.Liang
@@ -43,16 +54,52 @@ public class WeatherView extends SurfaceView implements SurfaceHolder.Callback {
     public static final int TYPE_FOGGY = 7;
     public static final int TYPE_HAZY = 8;
 
+    @IntDef({QUALITY_LOW, QUALITY_MEDIUM, QUALITY_HIGH, QUALITY_AUTO})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Quality {
+    }
+
+    public static final int QUALITY_LOW = AbsPainter.QUALITY_LOW;
+    public static final int QUALITY_MEDIUM = AbsPainter.QUALITY_MEDIUM;
+    public static final int QUALITY_HIGH = AbsPainter.QUALITY_HIGH;
+    public static final int QUALITY_AUTO = 3;
+
+    private static final String TAG = "WeatherView";
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+    private static final long MAX_FRAME_ELAPSED_NANOS = 100000000L;
+    private static final int PREWARM_FRAMES = 2;
+    private static final long DEFAULT_BAKED_LOOP_BUDGET = 4 * 1024 * 1024;
+    private static final float BAKED_LOOP_SCALE = 0.5f;
+    private static final int BAKED_LOOP_FPS = 20;
+    private static final float MIN_RENDER_SCALE = 0.25f;
+    private static ExecutorService sBakeExecutor;
     private final SurfaceHolder mHolder;
     private int mType;
-    private Painter mPainter;
+    private int mPendingType;
+    private volatile RenderState mState = new RenderState(TYPE_NONE, null, 0, 0, 1f);
+    private Painter mHeldPainter;
     private OnWeatherChangeListener mOnWeatherChangeListener;
-    private UpdateThread mThread;
-    private boolean mRunning = true;
+    private SurfaceRenderer mRenderer;
+    private volatile boolean mRunning = true;
     private boolean mStarted;
     private boolean mVisible;
-
-    private Paint mClearPaint;
+    private boolean mHardwareCanvasEnabled;
+    private final FrameStatsRecorder mStats = new FrameStatsRecorder();
+    private volatile boolean mFrameStatsEnabled;
+    private volatile int mTransitionDuration;
+    private volatile boolean mOnScreen = true;
+    private final Rect mVisibleRect = new Rect();
+    private final VisibilityTracker mVisibilityTracker = new VisibilityTracker();
+    private volatile int mQuality = QUALITY_HIGH;
+    private volatile int mEffectiveQuality = QUALITY_HIGH;
+    private boolean mBakedLoopEnabled;
+    private long mBakedLoopBudget = DEFAULT_BAKED_LOOP_BUDGET;
+    private volatile BakedLoop mBakedLoop;
+    private int mBakeType = TYPE_NONE;
+    private int mBakeWidth;
+    private int mBakeHeight;
+    private float mBakeScale;
+    private float mRenderScale = 1f;
 
     public WeatherView(Context context) {
         this(context, null);
@@ -71,43 +118,73 @@ public class WeatherView extends SurfaceView implements SurfaceHolder.Callback {
         initFromAttributes(context, attrs, defStyleAttr, defStyleRes);
         mHolder = getHolder();
         mHolder.addCallback(this);
-        initView();
-    }
-
-    private void initView() {
-        mClearPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        mClearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
     }
 
     private void initFromAttributes(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
         TypedArray array = context.obtainStyledAttributes(attrs, R.styleable.WeatherView, defStyleAttr, defStyleRes);
         final int type = array.getInt(R.styleable.WeatherView_type, TYPE_NONE);
+        mHardwareCanvasEnabled = array.getBoolean(R.styleable.WeatherView_hardwareCanvas, false);
+        mTransitionDuration = array.getInt(R.styleable.WeatherView_transitionDuration, 0);
+        mBakedLoopEnabled = array.getBoolean(R.styleable.WeatherView_bakedLoop, false);
+        mQuality = array.getInt(R.styleable.WeatherView_quality, QUALITY_HIGH);
+        mRenderScale = clampRenderScale(array.getFloat(R.styleable.WeatherView_renderScale, 1f));
         setupPainter(type);
         array.recycle();
     }
 
     private void setupPainter(int type) {
+        mType = type;
         Painter painter = PainterFactory.getInstance(getContext(), type);
-        setPainter(painter);
+        holdPainter(painter);
+        setPainter(type, painter);
         if (mOnWeatherChangeListener != null)
             mOnWeatherChangeListener.onWeatherChanged(type);
     }
 
     public void setWeather(@WeatherType int type) {
-        if (mType != type) {
-            mType = type;
-            setupPainter(type);
-        }
+        mPendingType = type;
+        if (mType != type) setupPainter(type);
     }
 
-    private void setPainter(@Nullable Painter painter) {
-        if (mPainter != null) mPainter.onDetachedFromView();
-        mPainter = painter;
-        if (mPainter != null) {
-            mPainter.onAttachedToView();
-            if (getWidth() != 0 || getHeight() != 0)
-                mPainter.setSize(getWidth(), getHeight());
-        }
+    /**
+     * Like {@link #setWeather(int)}, but builds the painter and its resources for the current
+     * size on a background thread first and keeps showing the current weather until it is
+     * ready. A later call to either method wins over a pending one.
+     */
+    public void setWeatherAsync(@WeatherType final int type) {
+        mPendingType = type;
+        if (mType == type) return;
+        // build for the surface the render thread will size the painter to
+        final RenderState state = mState;
+        final boolean sized = state.width > 0 && state.height > 0;
+        final float scale = sized ? state.scale : mRenderScale;
+        final int width = sized ? state.width : Math.round(getWidth() * scale);
+        final int height = sized ? state.height : Math.round(getHeight() * scale);
+        PainterFactory.prewarm(getContext(), new int[]{type}, width, height, scale, PREWARM_FRAMES,
+                new PainterFactory.OnPrewarmListener() {
+                    @Override
+                    public void onPrewarmed(int[] types) {
+                        if (mPendingType == type) setWeather(type);
+                    }
+                });
+    }
+
+    /**
+     * Keeps the painter handed out by {@link PainterFactory} to this view alone until it moves
+     * on to another one or leaves the window.
+     */
+    private void holdPainter(@Nullable Painter painter) {
+        PainterFactory.release(mHeldPainter);
+        mHeldPainter = painter;
+    }
+
+    /**
+     * The painter is swapped in by the render thread at the start of its next frame.
+     */
+    private void setPainter(int type, @Nullable Painter painter) {
+        final RenderState state = mState;
+        mState = new RenderState(type, painter, state.width, state.height, state.scale);
+        requestBakedLoop();
     }
 
     @Override
@@ -117,7 +194,11 @@ public class WeatherView extends SurfaceView implements SurfaceHolder.Callback {
 
     @Override
     public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-        if (mPainter != null) mPainter.setSize(width, height);
+        final RenderState state = mState;
+        // the surface is as large as the view unless it was given a fixed size
+        final float scale = getWidth() > 0 ? Math.min(1f, (float) width / getWidth()) : 1f;
+        mState = new RenderState(state.type, state.painter, width, height, scale);
+        requestBakedLoop();
         setStarted(true);
     }
 
@@ -126,63 +207,343 @@ public class WeatherView extends SurfaceView implements SurfaceHolder.Callback {
         setStarted(false);
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateSurfaceSize(w, h);
+    }
+
+    /**
+     * Gives the surface a buffer of the render scale times the view size, which the system
+     * compositor stretches over the view.
+     */
+    private void updateSurfaceSize(int w, int h) {
+        if (mRenderScale >= 1f) {
+            mHolder.setSizeFromLayout();
+        } else if (w > 0 && h > 0) {
+            mHolder.setFixedSize(Math.max(1, Math.round(w * mRenderScale)),
+                    Math.max(1, Math.round(h * mRenderScale)));
+        }
+    }
+
     private void startUpdate() {
-        if (mThread == null) {
-            mThread = new UpdateThread();
-            mThread.start();
-            if (mPainter != null) mPainter.onAttachedToView();
+        if (mRenderer == null) {
+            final boolean hardware = mHardwareCanvasEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+            mRenderer = new SurfaceRenderer(hardware);
+            updateOnScreen();
+            RenderScheduler.getInstance().add(mRenderer, getFrameIntervalNanos());
         }
     }
 
     private void stopUpdate() {
-        if (mThread != null) {
-            mThread.interrupt();
-            mThread = null;
-            if (mPainter != null) mPainter.onDetachedFromView();
+        if (mRenderer != null) {
+            mRenderer.finish();
+            mRenderer = null;
+        }
+    }
+
+    private long getFrameIntervalNanos() {
+        Display display = getDisplay();
+        if (display == null) {
+            WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+            display = wm.getDefaultDisplay();
+        }
+        float refreshRate = display.getRefreshRate();
+        if (refreshRate < 1f) refreshRate = DEFAULT_REFRESH_RATE;
+        return (long) (1000000000L / refreshRate);
+    }
+
+    /**
+     * Bakes the loop of the current weather at the current size in the background if baked
+     * playback is on, leaving the view on live rendering until it is ready or if it cannot be
+     * baked within the budget.
+     */
+    private void requestBakedLoop() {
+        final RenderState state = mState;
+        final BakedLoop baked = mBakedLoop;
+        if (!mBakedLoopEnabled || state.painter == null || state.width <= 0 || state.height <= 0) {
+            mBakedLoop = null;
+            mBakeType = TYPE_NONE;
+            return;
+        }
+        if (baked != null && baked.matches(state.type, state.width, state.height, state.scale)) return;
+        mBakedLoop = null;
+        if (mBakeType == state.type && mBakeWidth == state.width && mBakeHeight == state.height
+                && mBakeScale == state.scale) return;
+        final int type = mBakeType = state.type;
+        final int width = mBakeWidth = state.width;
+        final int height = mBakeHeight = state.height;
+        final float scale = mBakeScale = state.scale;
+        final long budget = mBakedLoopBudget;
+        final Context context = getContext().getApplicationContext();
+        getBakeExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final BakedLoop loop = BakedLoop.bake(context, type, width, height, scale,
+                        BAKED_LOOP_SCALE, BAKED_LOOP_FPS, budget);
+                if (loop == null) {
+                    Log.i(TAG, "weather " + type + " not baked, rendering live");
+                    return;
+                }
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        final RenderState state = mState;
+                        if (mBakedLoopEnabled && loop.matches(state.type, state.width, state.height, state.scale))
+                            mBakedLoop = loop;
+                    }
+                });
+            }
+        });
+    }
+
+    private static synchronized ExecutorService getBakeExecutor() {
+        if (sBakeExecutor == null) {
+            sBakeExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    final Thread thread = new Thread(r, "WeatherView-Bake");
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sBakeExecutor;
+    }
+
+    /**
+     * Painter, surface size and render scale for the render thread. The UI thread publishes a new instance for
+     * every change instead of touching the painter, so the render thread picks up a consistent
+     * pair between two frames.
+     */
+    private static final class RenderState {
+
+        final int type;
+        final Painter painter;
+        final int width;
+        final int height;
+        final float scale;
+
+        RenderState(int type, Painter painter, int width, int height, float scale) {
+            this.type = type;
+            this.painter = painter;
+            this.width = width;
+            this.height = height;
+            this.scale = scale;
         }
     }
 
-    private class UpdateThread extends Thread {
+    /**
+     * Renders this view's surface when {@link RenderScheduler} gives it a vsync slot. Painter
+     * lifecycle and size changes are applied here too, always between two frames. All methods
+     * run on the shared render thread.
+     */
+    private class SurfaceRenderer implements RenderScheduler.Target {
+
+        private volatile boolean mFinished;
+        private long mLastFrameTimeNanos;
+        private boolean mHardware;
+        private RenderState mApplied;
+        private Bitmap mSnapshot;
+        private Paint mSnapshotPaint;
+        private long mTransitionNanos;
+        private long mTransitionRemainingNanos;
+        private BakedLoop mPlaying;
+        private long mPlayingNanos;
+        private int mPlayingIndex;
+        private Bitmap mPlayingFrame;
+        private final BitmapFactory.Options mDecodeOptions = new BitmapFactory.Options();
+        private final Rect mPlayingDst = new Rect();
+        private final Paint mPlayingPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final AutoQuality mAutoQuality = new AutoQuality();
+
+        SurfaceRenderer(boolean hardware) {
+            mHardware = hardware;
+        }
 
-        private boolean paused;
+        @Override
+        public boolean isRenderable() {
+            if (mFinished) return false;
+            if (!mOnScreen) {
+                // coming back on screen should not count the time away as a frame interval
+                mLastFrameTimeNanos = 0;
+                return false;
+            }
+            return true;
+        }
 
         @Override
-        public void run() {
-            while (mRunning) {
+        public void onVsyncMissed(long missed) {
+            if (mOnScreen) mStats.recordDropped(missed);
+        }
+
+        @Override
+        public void renderFrame(long frameTimeNanos, long vsyncIntervalNanos) {
+            long elapsed = vsyncIntervalNanos;
+            if (mLastFrameTimeNanos != 0) {
+                elapsed = frameTimeNanos - mLastFrameTimeNanos;
+                if (mFrameStatsEnabled) mStats.recordInterval(elapsed);
+            }
+            mLastFrameTimeNanos = frameTimeNanos;
+            final boolean timed = mFrameStatsEnabled;
+            final Painter painter = applyState(mState);
+            final boolean auto = mQuality == QUALITY_AUTO;
+            final int quality = auto ? mAutoQuality.getTier() : mQuality;
+            if (painter instanceof AbsPainter) ((AbsPainter) painter).setQuality(quality);
+            mEffectiveQuality = quality;
+            final long lockStart = timed ? System.nanoTime() : 0;
+            Canvas canvas = lockCanvas();
+            if (canvas != null) {
+                final long drawStart = timed || auto ? System.nanoTime() : 0;
+                // a long stall should not make the animation jump ahead
+                final long frameElapsed = Math.min(elapsed, MAX_FRAME_ELAPSED_NANOS);
+                final BakedLoop baked = mBakedLoop;
+                final boolean playing = baked != null && baked.matches(mApplied.type, mApplied.width,
+                        mApplied.height, mApplied.scale);
+                if (mTransitionRemainingNanos > 0) {
+                    final int count = canvas.save();
+                    drawFrame(painter, baked, playing, canvas, frameElapsed);
+                    canvas.restoreToCount(count);
+                    drawTransition(canvas, frameElapsed);
+                } else {
+                    drawFrame(painter, baked, playing, canvas, frameElapsed);
+                }
+                final long postStart = timed || auto ? System.nanoTime() : 0;
+                if (auto) mAutoQuality.onFrame(postStart - drawStart, vsyncIntervalNanos);
                 try {
-                    Canvas canvas = mHolder.lockCanvas();
-                    if (canvas != null) {
-                        canvas.drawPaint(mClearPaint);
-                        drawPainter(canvas);
-                        try {
-                            mHolder.unlockCanvasAndPost(canvas);
-                        } catch (IllegalArgumentException e) {
-                            break;
-                        }
-                    }
-                    Thread.sleep(1);
-                    synchronized (this) {
-                        while (paused) {
-                            wait();
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    break;
+                    unlockCanvasAndPost(canvas);
+                } catch (IllegalArgumentException e) {
+                    // the surface is gone, stop until the view restarts rendering
+                    finish();
+                    return;
+                }
+                if (timed) {
+                    final long end = System.nanoTime();
+                    mStats.recordFrame(playing ? null : painter, drawStart - lockStart, postStart - drawStart,
+                            end - postStart, vsyncIntervalNanos);
+                }
+            }
+        }
+
+        private void drawFrame(Painter painter, BakedLoop baked, boolean playing, Canvas canvas, long elapsedNanos) {
+            if (playing) drawBakedLoop(baked, canvas, elapsedNanos);
+            else drawPainter(painter, canvas, elapsedNanos);
+        }
+
+        /**
+         * Blits the baked frame for the loop's clock, decoding only when the frame changes.
+         */
+        private void drawBakedLoop(BakedLoop baked, Canvas canvas, long elapsedNanos) {
+            if (mPlaying != baked) {
+                mPlaying = baked;
+                mPlayingNanos = 0;
+                mPlayingIndex = -1;
+            } else {
+                mPlayingNanos = (mPlayingNanos + elapsedNanos) % baked.getLoopNanos();
+            }
+            final int index = baked.getFrameIndex(mPlayingNanos);
+            if (index != mPlayingIndex || mPlayingFrame == null) {
+                mPlayingFrame = baked.decode(index, mPlayingFrame, mDecodeOptions);
+                mPlayingIndex = index;
+            }
+            if (mPlayingFrame != null) {
+                mPlayingDst.set(0, 0, baked.width, baked.height);
+                canvas.drawBitmap(mPlayingFrame, null, mPlayingDst, mPlayingPaint);
+            }
+        }
+
+        private Painter applyState(RenderState state) {
+            if (state == mApplied) return state.painter;
+            final Painter old = mApplied != null ? mApplied.painter : null;
+            final Painter painter = state.painter;
+            if (old != painter) {
+                if (old != null) {
+                    snapshot(old, state);
+                    old.onDetachedFromView();
                 }
+                if (painter != null) painter.onAttachedToView();
             }
+            if (painter instanceof AbsPainter && (state.width != 0 || state.height != 0))
+                ((AbsPainter) painter).setSize(state.width, state.height, state.scale);
+            else if (painter != null && (state.width != 0 || state.height != 0))
+                painter.setSize(state.width, state.height);
+            mApplied = state;
+            return painter;
         }
 
-        void updatePause() {
-            paused = true;
+        /**
+         * Renders one more frame of the outgoing painter into a bitmap kept for the next
+         * transitions, so the fade only costs a blit on top of the incoming painter.
+         */
+        private void snapshot(Painter old, RenderState state) {
+            mTransitionRemainingNanos = 0;
+            final int duration = mTransitionDuration;
+            final int w = mApplied.width;
+            final int h = mApplied.height;
+            if (duration <= 0 || w <= 0 || h <= 0 || w != state.width || h != state.height) return;
+            if (mSnapshot == null || mSnapshot.getWidth() != w || mSnapshot.getHeight() != h) {
+                releaseSnapshot();
+                mSnapshot = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+                mSnapshotPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            }
+            old.draw(new Canvas(mSnapshot), 0);
+            mTransitionNanos = duration * 1000000L;
+            mTransitionRemainingNanos = mTransitionNanos;
         }
 
-        synchronized void updateResume() {
-            paused = false;
-            notify();
+        private void drawTransition(Canvas canvas, long elapsedNanos) {
+            mSnapshotPaint.setAlpha((int) (255 * mTransitionRemainingNanos / mTransitionNanos));
+            canvas.drawBitmap(mSnapshot, 0, 0, mSnapshotPaint);
+            mTransitionRemainingNanos -= elapsedNanos;
         }
 
-        boolean isPaused() {
-            return paused;
+        private void releaseSnapshot() {
+            if (mSnapshot != null) {
+                mSnapshot.recycle();
+                mSnapshot = null;
+            }
+            mTransitionRemainingNanos = 0;
+        }
+
+        /**
+         * Stops rendering and detaches the painter on the render thread. Never blocks the caller.
+         */
+        void finish() {
+            mFinished = true;
+            RenderScheduler.getInstance().remove(this);
+        }
+
+        @Override
+        public void onRemoved() {
+            if (mApplied != null && mApplied.painter != null) mApplied.painter.onDetachedFromView();
+            mApplied = null;
+            releaseSnapshot();
+            if (mPlayingFrame != null) {
+                mPlayingFrame.recycle();
+                mPlayingFrame = null;
+            }
+            mPlaying = null;
+        }
+
+        /**
+         * Locks a hardware accelerated canvas when enabled, falling back to the software canvas
+         * for as long as this view keeps rendering if the surface refuses one.
+         */
+        private Canvas lockCanvas() {
+            if (mHardware) {
+                try {
+                    return mHolder.getSurface().lockHardwareCanvas();
+                } catch (IllegalStateException e) {
+                    Log.w(TAG, "hardware canvas unavailable, falling back to software", e);
+                    mHardware = false;
+                }
+            }
+            return mHolder.lockCanvas();
+        }
+
+        private void unlockCanvasAndPost(Canvas canvas) {
+            if (mHardware) mHolder.getSurface().unlockCanvasAndPost(canvas);
+            else mHolder.unlockCanvasAndPost(canvas);
         }
     }
 
@@ -193,12 +554,30 @@ public class WeatherView extends SurfaceView implements SurfaceHolder.Callback {
         updateRunning();
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnScrollChangedListener(mVisibilityTracker);
+        observer.addOnGlobalLayoutListener(mVisibilityTracker);
+        if (mHeldPainter == null && mType != TYPE_NONE) {
+            // the painter may have been dropped from the cache while this view was away
+            final Painter painter = PainterFactory.getInstance(getContext(), mType);
+            holdPainter(painter);
+            if (painter != mState.painter) setPainter(mType, painter);
+        }
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.removeOnScrollChangedListener(mVisibilityTracker);
+        observer.removeOnGlobalLayoutListener(mVisibilityTracker);
         mVisible = false;
         updateRunning();
         mHolder.removeCallback(this);
+        holdPainter(null);
     }
 
     private void updateRunning() {
@@ -213,6 +592,28 @@ public class WeatherView extends SurfaceView implements SurfaceHolder.Callback {
         }
     }
 
+    /**
+     * Recomputes on the UI thread whether any part of the view is on screen, so the render
+     * thread can skip it while scrolled away.
+     */
+    private void updateOnScreen() {
+        mOnScreen = getGlobalVisibleRect(mVisibleRect);
+    }
+
+    private class VisibilityTracker implements ViewTreeObserver.OnScrollChangedListener,
+            ViewTreeObserver.OnGlobalLayoutListener {
+
+        @Override
+        public void onScrollChanged() {
+            updateOnScreen();
+        }
+
+        @Override
+        public void onGlobalLayout() {
+            updateOnScreen();
+        }
+    }
+
     public void setStarted(boolean started) {
         if (mStarted != started) {
             mStarted = started;
@@ -220,12 +621,172 @@ public class WeatherView extends SurfaceView implements SurfaceHolder.Callback {
         }
     }
 
-    private void drawPainter(Canvas canvas) {
-        if (mPainter != null)
-            mPainter.draw(canvas);
+    private void drawPainter(Painter painter, Canvas canvas, long elapsedNanos) {
+        if (painter != null)
+            painter.draw(canvas, elapsedNanos);
         else canvas.drawColor(Color.WHITE);
     }
 
+    /**
+     * Renders through {@link android.view.Surface#lockHardwareCanvas()} on API 23 and above.
+     * Takes effect the next time the surface is created; devices that refuse a hardware canvas
+     * keep using the software one.
+     */
+    public void setHardwareCanvasEnabled(boolean enabled) {
+        mHardwareCanvasEnabled = enabled;
+    }
+
+    public boolean isHardwareCanvasEnabled() {
+        return mHardwareCanvasEnabled;
+    }
+
+    /**
+     * Caps the frames rendered per second summed over all weather views in the process, which
+     * share one render thread. Views take turns when the cap does not cover all of them.
+     *
+     * @param fps maximum frames per second, or 0 for one frame per vsync for every view
+     */
+    public static void setMaxFramesPerSecond(int fps) {
+        RenderScheduler.getInstance().setMaxFramesPerSecond(fps);
+    }
+
+    public static int getMaxFramesPerSecond() {
+        return RenderScheduler.getInstance().getMaxFramesPerSecond();
+    }
+
+    /**
+     * Plays weathers whose animation repeats from one loop pre-rendered at reduced resolution
+     * and frame rate, so every frame costs the same whatever the painter draws. The loop is
+     * baked in the background whenever the weather or size changes; until then, or if it does
+     * not fit the budget, the weather is rendered live.
+     */
+    public void setBakedLoopEnabled(boolean enabled) {
+        if (mBakedLoopEnabled != enabled) {
+            mBakedLoopEnabled = enabled;
+            mBakeType = TYPE_NONE;
+            requestBakedLoop();
+        }
+    }
+
+    public boolean isBakedLoopEnabled() {
+        return mBakedLoopEnabled;
+    }
+
+    /**
+     * Sets how many bytes of compressed frames one baked loop may take. Defaults to 4 MiB.
+     */
+    public void setBakedLoopBudget(long bytes) {
+        if (mBakedLoopBudget != bytes) {
+            mBakedLoopBudget = bytes;
+            mBakeType = TYPE_NONE;
+            mBakedLoop = null;
+            requestBakedLoop();
+        }
+    }
+
+    public long getBakedLoopBudget() {
+        return mBakedLoopBudget;
+    }
+
+    /**
+     * @return whether the current weather is played from a baked loop
+     */
+    public boolean isPlayingBakedLoop() {
+        final RenderState state = mState;
+        final BakedLoop baked = mBakedLoop;
+        return baked != null && baked.matches(state.type, state.width, state.height, state.scale);
+    }
+
+    /**
+     * Renders into a surface buffer of {@code scale} times the view size that the system
+     * compositor scales up, which cuts the pixels drawn per frame by the square of the scale.
+     * Painters keep their proportions at any scale. Soft gradients and thin lines hold up well
+     * down to about 0.5.
+     *
+     * @param scale between 0.25 and 1, the default
+     */
+    public void setRenderScale(float scale) {
+        scale = clampRenderScale(scale);
+        if (mRenderScale != scale) {
+            mRenderScale = scale;
+            updateSurfaceSize(getWidth(), getHeight());
+        }
+    }
+
+    public float getRenderScale() {
+        return mRenderScale;
+    }
+
+    private static float clampRenderScale(float scale) {
+        return Math.max(MIN_RENDER_SCALE, Math.min(1f, scale));
+    }
+
+    /**
+     * Sets how much detail the painters draw. {@link #QUALITY_AUTO} starts at the high tier,
+     * steps down while drawing takes most of the frame budget and steps back up after a few
+     * seconds of headroom.
+     */
+    public void setQuality(@Quality int quality) {
+        mQuality = quality;
+    }
+
+    @Quality
+    public int getQuality() {
+        return mQuality;
+    }
+
+    /**
+     * @return tier the painter was last drawn at, never {@link #QUALITY_AUTO}
+     */
+    @Quality
+    public int getEffectiveQuality() {
+        return mEffectiveQuality;
+    }
+
+    /**
+     * Sets how long a weather change cross-fades from the last frame of the outgoing weather,
+     * in milliseconds. 0, the default, switches instantly.
+     */
+    public void setTransitionDuration(int millis) {
+        mTransitionDuration = Math.max(0, millis);
+    }
+
+    public int getTransitionDuration() {
+        return mTransitionDuration;
+    }
+
+    /**
+     * @return number of vsync intervals the render loop has missed since this view was created
+     * or the frame statistics were last reset
+     */
+    public long getMissedFrameCount() {
+        return mStats.getDroppedFrameCount();
+    }
+
+    /**
+     * Turns on timing of the render loop. Off by default; dropped frames are counted either way.
+     *
+     * @see #getFrameStats()
+     */
+    public void setFrameStatsEnabled(boolean enabled) {
+        mFrameStatsEnabled = enabled;
+    }
+
+    public boolean isFrameStatsEnabled() {
+        return mFrameStatsEnabled;
+    }
+
+    /**
+     * @return statistics of the frames rendered so far, safe to call from any thread
+     */
+    public FrameStats getFrameStats() {
+        return mStats.snapshot();
+    }
+
+    public void resetFrameStats() {
+        mStats.reset();
+    }
+
     public void setOnWeatherChangeListener(OnWeatherChangeListener listener) {
         mOnWeatherChangeListener = listener;
     }